@@ -0,0 +1,17 @@
+package com.ecommerce.common.cqrs;
+
+import java.util.Set;
+
+// Marks a query whose result QueryResultCache may keep. The query itself is the cache key, so it
+// must have value equality (a Lombok @Data subclass does), and its handler should return a result
+// that callers do not modify, since every hit returns the same instance.
+public interface CacheableQuery<R> {
+
+    // An event of any of these types evicts the result, whichever aggregate it belongs to
+    Set<String> invalidatingEventTypes();
+
+    // An event of any type on one of these aggregates evicts the result
+    default Set<String> invalidatingAggregateIds(R result) {
+        return Set.of();
+    }
+}
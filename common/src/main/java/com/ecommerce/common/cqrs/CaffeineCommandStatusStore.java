@@ -0,0 +1,58 @@
+package com.ecommerce.common.cqrs;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Per instance store, repeats are only recognized when they reach the same instance
+@Component
+@ConditionalOnProperty(name = "app.cqrs.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class CaffeineCommandStatusStore implements CommandStatusStore {
+
+    @Value("${app.cqrs.idempotency.maximum-size:100000}")
+    private long maximumSize;
+
+    @Value("${app.cqrs.idempotency.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    private Cache<String, CommandStatus> statuses;
+
+    @PostConstruct
+    public void init() {
+        statuses = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+            .build();
+    }
+
+    @Override
+    public Optional<CommandStatus> putIfAbsent(CommandStatus status) {
+        return Optional.ofNullable(statuses.asMap().putIfAbsent(status.getCommandId(), status));
+    }
+
+    @Override
+    public void put(CommandStatus status) {
+        statuses.put(status.getCommandId(), status);
+    }
+
+    @Override
+    public boolean replace(CommandStatus expected, CommandStatus updated) {
+        return statuses.asMap().replace(expected.getCommandId(), expected, updated);
+    }
+
+    @Override
+    public Optional<CommandStatus> get(String commandId) {
+        return Optional.ofNullable(statuses.getIfPresent(commandId));
+    }
+
+    @Override
+    public void remove(String commandId) {
+        statuses.invalidate(commandId);
+    }
+}
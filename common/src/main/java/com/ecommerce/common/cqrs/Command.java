@@ -1,9 +1,9 @@
 package com.ecommerce.common.cqrs;
 
+import com.ecommerce.common.util.IdGenerator;
 import lombok.Data;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Data
 public abstract class Command {
@@ -12,7 +12,24 @@ public abstract class Command {
     private final LocalDateTime timestamp;
 
     protected Command() {
-        this.commandId = UUID.randomUUID().toString();
+        this(null);
+    }
+
+    // Lets clients pick the id, e.g. from an Idempotency-Key header, so a retried request is
+    // recognized as the same command
+    protected Command(String commandId) {
+        this.commandId = commandId != null ? commandId : IdGenerator.newId();
         this.timestamp = LocalDateTime.now();
     }
+
+    // Who sent the command, if known. Only they get to see its status.
+    public String getIssuedBy() {
+        return null;
+    }
+
+    // The aggregate this command changes, if any. Commands for the same aggregate, sync or async,
+    // are run one at a time in order, see CommandLaneScheduler.
+    public String getTargetAggregateId() {
+        return null;
+    }
 }
\ No newline at end of file
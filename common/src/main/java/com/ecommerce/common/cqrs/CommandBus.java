@@ -1,92 +1,246 @@
 package com.ecommerce.common.cqrs;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 @Service
-public class CommandBus {
+@Slf4j
+public class CommandBus implements SmartInitializingSingleton {
 
     @Autowired
     private ApplicationContext applicationContext;
 
-    private final Map<Class<?>, CommandHandler> handlers = new HashMap<>();
+    @Autowired
+    private CommandLaneScheduler commandLaneScheduler;
 
-    @SuppressWarnings("unchecked")
-    public <T extends Command> void send(T command) {
-        CommandHandler<T> handler = (CommandHandler<T>) getHandler((Class<T>) command.getClass());
-        if (handler == null) {
-            throw new IllegalArgumentException(
-                "No handler found for command: " + command.getClass().getSimpleName()
-            );
-        }
-        handler.handle(command);
+    @Autowired
+    private CommandStatusStore commandStatusStore;
+
+    @Autowired
+    private ObjectProvider<CommandInterceptor> interceptors;
+
+    @Value("${app.cqrs.async.threads:16}")
+    private int asyncThreads;
+
+    @Value("${app.cqrs.async.queue-capacity:1000}")
+    private int asyncQueueCapacity;
+
+    @Value("${app.cqrs.idempotency.running-timeout-ms:300000}")
+    private long runningTimeoutMs;
+
+    // Built once when the context is ready, dispatch is a lookup in an immutable map
+    private volatile Map<Class<?>, CommandHandler<?>> handlers = Collections.emptyMap();
+
+    // The interceptors composed around dispatch, also built once
+    private volatile CommandInterceptor.Chain chain = this::dispatch;
+
+    private ThreadPoolExecutor asyncExecutor;
+
+    @PostConstruct
+    public void init() {
+        // Bounded on both threads and queue, a full queue rejects the command instead of piling up
+        asyncExecutor = new ThreadPoolExecutor(asyncThreads, asyncThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(asyncQueueCapacity), new CustomizableThreadFactory("command-"));
+        asyncExecutor.allowCoreThreadTimeOut(true);
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends Command> CommandHandler<T> getHandler(Class<T> commandType) {
-        if (!handlers.containsKey(commandType)) {
-            CommandHandler<T> handler = findHandler(commandType);
-            if (handler != null) {
-                handlers.put(commandType, handler);
+    @PreDestroy
+    public void shutdown() {
+        asyncExecutor.shutdown();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<Class<?>, CommandHandler<?>> resolved = new HashMap<>();
+
+        applicationContext.getBeansOfType(CommandHandler.class).forEach((beanName, handler) -> {
+            Class<?> commandType = resolveCommandType(handler);
+            if (commandType == null) {
+                log.warn("Ignoring command handler {}, its command type cannot be resolved", beanName);
+                return;
             }
+
+            CommandHandler<?> existing = resolved.putIfAbsent(commandType, handler);
+            if (existing != null) {
+                throw new IllegalStateException(String.format("Command %s has two handlers: %s and %s",
+                    commandType.getSimpleName(), existing.getClass().getName(), handler.getClass().getName()));
+            }
+        });
+
+        handlers = Map.copyOf(resolved);
+        log.info("Registered {} command handlers", handlers.size());
+
+        List<CommandInterceptor> ordered = interceptors.orderedStream().toList();
+        CommandInterceptor.Chain composed = this::dispatch;
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            CommandInterceptor interceptor = ordered.get(i);
+            CommandInterceptor.Chain next = composed;
+            composed = command -> interceptor.intercept(command, next);
         }
-        return (CommandHandler<T>) handlers.get(commandType);
+        chain = composed;
+        log.info("Registered {} command interceptors", ordered.size());
     }
 
-    @SuppressWarnings("unchecked")
-    private <T extends Command> CommandHandler<T> findHandler(Class<T> commandType) {
-        Map<String, CommandHandler> handlerBeans = applicationContext.getBeansOfType(CommandHandler.class);
+    // Runs the command on the calling thread, or for a command that targets an aggregate on that
+    // aggregate's lane while the caller waits, so it cannot race other commands for the aggregate.
+    // A lane command therefore does not join the caller's transaction. A handler sending a command
+    // for an aggregate on its own lane runs it inline, one for another lane waits for that lane. A repeat of a command that
+    // succeeded or is still running returns quietly, a repeat of a failed or stale command runs again.
+    public <T extends Command> void send(T command) {
+        CommandStatus accepted = CommandStatus.accepted(command);
+        Optional<CommandStatus> existing = claim(accepted);
+        if (existing.isPresent()) {
+            log.info("Ignoring repeated command {} ({})", command.getCommandId(), existing.get().getState());
+            return;
+        }
+
+        if (command.getTargetAggregateId() == null || commandLaneScheduler.isOnLaneOf(command.getTargetAggregateId())) {
+            execute(command, accepted);
+            return;
+        }
+
+        try {
+            submit(command, accepted, commandLaneScheduler.laneFor(command.getTargetAggregateId())).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
 
-        // Debug logging
-        System.out.println("Found " + handlerBeans.size() + " CommandHandler beans:");
-        for (String beanName : handlerBeans.keySet()) {
-            System.out.println("  - " + beanName + ": " + handlerBeans.get(beanName).getClass().getName());
+    // Runs the command on its aggregate's lane, or on the shared command executor when it targets
+    // no aggregate, and returns right away. Progress is available from getStatus and the future
+    // completes with the final status. A repeat of a command that succeeded or is still running is
+    // not run again, the future completes with the recorded status instead. Throws
+    // RejectedExecutionException when the queue is full.
+    public <T extends Command> CompletableFuture<CommandStatus> sendAsync(T command) {
+        CommandStatus accepted = CommandStatus.accepted(command);
+        Optional<CommandStatus> existing = claim(accepted);
+        if (existing.isPresent()) {
+            log.info("Ignoring repeated command {} ({})", command.getCommandId(), existing.get().getState());
+            return CompletableFuture.completedFuture(existing.get());
         }
 
-        for (CommandHandler handler : handlerBeans.values()) {
-            Class<?> handlerClass = handler.getClass();
-            System.out.println("Checking handler: " + handlerClass.getName());
-
-            // Check direct interfaces
-            Type[] genericInterfaces = handlerClass.getGenericInterfaces();
-            for (Type genericInterface : genericInterfaces) {
-                System.out.println("  Interface: " + genericInterface);
-                if (genericInterface instanceof ParameterizedType) {
-                    ParameterizedType parameterizedType = (ParameterizedType) genericInterface;
-                    Type[] typeArguments = parameterizedType.getActualTypeArguments();
-                    if (typeArguments.length > 0) {
-                        System.out.println("    Type argument: " + typeArguments[0] + ", Looking for: " + commandType);
-                        if (typeArguments[0].equals(commandType)) {
-                            System.out.println("    MATCH FOUND!");
-                            return handler;
-                        }
-                    }
+        Executor executor = command.getTargetAggregateId() != null
+            ? commandLaneScheduler.laneFor(command.getTargetAggregateId())
+            : asyncExecutor;
+        return submit(command, accepted, executor);
+    }
+
+    public Optional<CommandStatus> getStatus(String commandId) {
+        return commandStatusStore.get(commandId);
+    }
+
+    // Records the command as accepted and returns empty, or returns the status of an earlier run of
+    // the same command id that is still in progress or succeeded. The status of a failed run is
+    // replaced, so a client retrying after a transient failure gets a fresh attempt. So is one in
+    // progress for longer than running-timeout-ms, its instance most likely died before finishing.
+    private Optional<CommandStatus> claim(CommandStatus accepted) {
+        while (true) {
+            Optional<CommandStatus> existing = commandStatusStore.putIfAbsent(accepted);
+            if (existing.isEmpty() || !isReclaimable(existing.get())) {
+                return existing;
+            }
+            if (commandStatusStore.replace(existing.get(), accepted)) {
+                if (existing.get().getState() != CommandStatus.State.FAILED) {
+                    log.warn("Taking over command {}, {} since {}", accepted.getCommandId(),
+                        existing.get().getState(), existing.get().getStartedAt() != null
+                            ? existing.get().getStartedAt() : existing.get().getAcceptedAt());
                 }
+                return Optional.empty();
             }
+        }
+    }
+
+    private boolean isReclaimable(CommandStatus status) {
+        return status.getState() == CommandStatus.State.FAILED
+            || status.isStale(LocalDateTime.now().minusNanos(runningTimeoutMs * 1_000_000));
+    }
+
+    // Moves the command to its next state unless a retry took it over in the meantime. A status that
+    // expired from the store is recorded again.
+    private boolean transition(CommandStatus expected, CommandStatus updated) {
+        return commandStatusStore.replace(expected, updated) || commandStatusStore.putIfAbsent(updated).isEmpty();
+    }
 
-            // Also check superclass interfaces (in case of inheritance)
-            Class<?> superClass = handlerClass.getSuperclass();
-            while (superClass != null && superClass != Object.class) {
-                Type[] superInterfaces = superClass.getGenericInterfaces();
-                for (Type genericInterface : superInterfaces) {
-                    if (genericInterface instanceof ParameterizedType) {
-                        ParameterizedType parameterizedType = (ParameterizedType) genericInterface;
-                        Type[] typeArguments = parameterizedType.getActualTypeArguments();
-                        if (typeArguments.length > 0 && typeArguments[0].equals(commandType)) {
-                            return handler;
-                        }
-                    }
+    private CompletableFuture<CommandStatus> submit(Command command, CommandStatus accepted, Executor executor) {
+        SecurityContext securityContext = SecurityContextHolder.getContext();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                SecurityContextHolder.setContext(securityContext);
+                try {
+                    return execute(command, accepted);
+                } finally {
+                    SecurityContextHolder.clearContext();
                 }
-                superClass = superClass.getSuperclass();
+            }, executor);
+        } catch (RuntimeException e) {
+            // Never ran, a retry with the same id must be allowed
+            commandStatusStore.remove(command.getCommandId());
+            throw e;
+        }
+    }
+
+    private CommandStatus execute(Command command, CommandStatus accepted) {
+        CommandStatus running = accepted.running();
+        if (!transition(accepted, running)) {
+            log.warn("Not running command {}, a retry took it over while it was queued", command.getCommandId());
+            return commandStatusStore.get(command.getCommandId()).orElse(accepted);
+        }
+        try {
+            chain.proceed(command);
+            CommandStatus succeeded = running.succeeded();
+            if (!transition(running, succeeded)) {
+                log.warn("Command {} finished after a retry took it over", command.getCommandId());
             }
+            return succeeded;
+        } catch (RuntimeException e) {
+            log.error("Command {} ({}) failed", command.getCommandId(), command.getClass().getSimpleName(), e);
+            transition(running, running.failed(e));
+            throw e;
         }
-        System.out.println("No handler found for command: " + commandType.getName());
-        return null;
     }
-}
\ No newline at end of file
+
+    @SuppressWarnings("unchecked")
+    private <T extends Command> void dispatch(T command) {
+        CommandHandler<T> handler = (CommandHandler<T>) handlers.get(command.getClass());
+        if (handler == null) {
+            throw new IllegalArgumentException(
+                "No handler found for command: " + command.getClass().getSimpleName()
+            );
+        }
+        handler.handle(command);
+    }
+
+    // Resolves T of CommandHandler<T> through proxies, CGLIB subclasses and handler superclasses
+    private Class<?> resolveCommandType(CommandHandler<?> handler) {
+        Class<?> handlerClass = AopUtils.getTargetClass(handler);
+        return ResolvableType.forClass(handlerClass).as(CommandHandler.class).resolveGeneric(0);
+    }
+}
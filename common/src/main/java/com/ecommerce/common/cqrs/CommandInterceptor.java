@@ -0,0 +1,13 @@
+package com.ecommerce.common.cqrs;
+
+// Wraps the dispatch of every command to its handler. Interceptors are picked up as beans and run
+// in @Order order, each one calls chain.proceed to continue with the next or the handler itself.
+public interface CommandInterceptor {
+
+    void intercept(Command command, Chain chain);
+
+    @FunctionalInterface
+    interface Chain {
+        void proceed(Command command);
+    }
+}
@@ -0,0 +1,77 @@
+package com.ecommerce.common.cqrs;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Fixed set of single threaded lanes. Commands are hashed onto a lane by their target aggregate,
+// so the commands of one aggregate run one after another in submission order and never race on
+// its version, while commands for aggregates on different lanes run in parallel.
+@Component
+@Slf4j
+public class CommandLaneScheduler {
+
+    private static final String LANE_THREAD_PREFIX = "command-lane-";
+
+    // Index of the lane the current thread belongs to, unset off the lanes
+    private static final ThreadLocal<Integer> CURRENT_LANE = new ThreadLocal<>();
+
+    @Value("${app.cqrs.lanes.count:0}")
+    private int configuredLaneCount;
+
+    @Value("${app.cqrs.lanes.queue-capacity:1000}")
+    private int queueCapacity;
+
+    private ThreadPoolExecutor[] lanes;
+
+    @PostConstruct
+    public void init() {
+        int laneCount = configuredLaneCount > 0 ? configuredLaneCount : Runtime.getRuntime().availableProcessors() * 2;
+        lanes = new ThreadPoolExecutor[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            int lane = i;
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(LANE_THREAD_PREFIX + i + "-") {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    return super.newThread(() -> {
+                        CURRENT_LANE.set(lane);
+                        runnable.run();
+                    });
+                }
+            };
+            lanes[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory);
+        }
+        log.info("Started {} command lanes", laneCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+    }
+
+    public Executor laneFor(String aggregateId) {
+        return lanes[laneIndex(aggregateId)];
+    }
+
+    // A command sent from a command handler for an aggregate of the same lane must not wait for
+    // that lane, it is the one running the handler. Commands for other lanes still go through them.
+    public boolean isOnLaneOf(String aggregateId) {
+        Integer lane = CURRENT_LANE.get();
+        return lane != null && lane == laneIndex(aggregateId);
+    }
+
+    private int laneIndex(String aggregateId) {
+        return Math.floorMod(aggregateId.hashCode(), lanes.length);
+    }
+}
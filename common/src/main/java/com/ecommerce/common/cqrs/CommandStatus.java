@@ -0,0 +1,56 @@
+package com.ecommerce.common.cqrs;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Progress of a command sent through the CommandBus. Each transition creates a new instance,
+// so a status read by another thread is never half updated. Statuses are kept by CommandStatusStore.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommandStatus {
+
+    public enum State {
+        ACCEPTED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private String commandId;
+    private String commandType;
+    private String issuedBy;
+    private State state;
+    private String error;
+    private LocalDateTime acceptedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    static CommandStatus accepted(Command command) {
+        return new CommandStatus(command.getCommandId(), command.getClass().getSimpleName(), command.getIssuedBy(),
+            State.ACCEPTED, null, LocalDateTime.now(), null, null);
+    }
+
+    CommandStatus running() {
+        return new CommandStatus(commandId, commandType, issuedBy, State.RUNNING, null, acceptedAt, LocalDateTime.now(), null);
+    }
+
+    CommandStatus succeeded() {
+        return new CommandStatus(commandId, commandType, issuedBy, State.SUCCEEDED, null, acceptedAt, startedAt,
+            LocalDateTime.now());
+    }
+
+    CommandStatus failed(Throwable error) {
+        return new CommandStatus(commandId, commandType, issuedBy, State.FAILED, error.getMessage(), acceptedAt, startedAt,
+            LocalDateTime.now());
+    }
+
+    // Accepted or running since before the cutoff, most likely left behind by an instance that died
+    boolean isStale(LocalDateTime cutoff) {
+        if (state != State.ACCEPTED && state != State.RUNNING) {
+            return false;
+        }
+        LocalDateTime since = startedAt != null ? startedAt : acceptedAt;
+        return since != null && since.isBefore(cutoff);
+    }
+}
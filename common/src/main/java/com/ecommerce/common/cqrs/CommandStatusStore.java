@@ -0,0 +1,21 @@
+package com.ecommerce.common.cqrs;
+
+import java.util.Optional;
+
+// Records the status of every command by its id for a limited time. CommandBus uses it both to
+// report progress and to drop repeated commands: a command id that is running or has succeeded is
+// not run again.
+public interface CommandStatusStore {
+
+    // Stores the status unless its command id is already known, returns the known status if so
+    Optional<CommandStatus> putIfAbsent(CommandStatus status);
+
+    void put(CommandStatus status);
+
+    // Replaces the stored status only if it is still the expected one, returns whether it did
+    boolean replace(CommandStatus expected, CommandStatus updated);
+
+    Optional<CommandStatus> get(String commandId);
+
+    void remove(String commandId);
+}
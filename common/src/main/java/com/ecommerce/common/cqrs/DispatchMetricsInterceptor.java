@@ -0,0 +1,75 @@
+package com.ecommerce.common.cqrs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Times every command and query per type and outcome (cqrs.command and cqrs.query, with percentile
+// histograms) and logs the ones slower than the configured threshold. Runs outermost so the time
+// includes every other interceptor.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class DispatchMetricsInterceptor implements CommandInterceptor, QueryInterceptor {
+
+    private static final String SUCCESS = "success";
+    private static final String FAILURE = "failure";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${app.cqrs.metrics.slow-threshold-ms:500}")
+    private long slowThresholdMs;
+
+    // Timers are looked up once per type and outcome, not on every dispatch
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    @Override
+    public void intercept(Command command, CommandInterceptor.Chain chain) {
+        long start = System.nanoTime();
+        String outcome = FAILURE;
+        try {
+            chain.proceed(command);
+            outcome = SUCCESS;
+        } finally {
+            record("cqrs.command", command.getClass(), outcome, command.getCommandId(), start);
+        }
+    }
+
+    @Override
+    public Object intercept(Query<?> query, QueryInterceptor.Chain chain) {
+        long start = System.nanoTime();
+        String outcome = FAILURE;
+        try {
+            Object result = chain.proceed(query);
+            outcome = SUCCESS;
+            return result;
+        } finally {
+            record("cqrs.query", query.getClass(), outcome, query.getQueryId(), start);
+        }
+    }
+
+    private void record(String name, Class<?> type, String outcome, String id, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        timers.computeIfAbsent(name + ':' + type.getName() + ':' + outcome, key -> Timer.builder(name)
+                .tag("type", type.getSimpleName())
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry))
+            .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+        if (elapsedMs >= slowThresholdMs) {
+            log.warn("Slow {} {} ({}) took {} ms, outcome {}", name, type.getSimpleName(), id, elapsedMs, outcome);
+        }
+    }
+}
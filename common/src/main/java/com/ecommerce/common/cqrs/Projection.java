@@ -0,0 +1,17 @@
+package com.ecommerce.common.cqrs;
+
+import com.ecommerce.common.event.StoredEvent;
+
+import java.util.Set;
+
+public interface Projection {
+
+    String getName();
+
+    Set<String> getHandledEventTypes();
+
+    void handle(StoredEvent event);
+
+    // Clears the read model before a rebuild replays the store from the beginning
+    void reset();
+}
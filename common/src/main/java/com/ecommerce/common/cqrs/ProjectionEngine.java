@@ -0,0 +1,94 @@
+package com.ecommerce.common.cqrs;
+
+import com.ecommerce.common.event.EventSubscriber;
+import com.ecommerce.common.event.EventSubscriptionManager;
+import com.ecommerce.common.event.StoredEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@Service
+@Slf4j
+public class ProjectionEngine {
+
+    private static final String SUBSCRIBER_PREFIX = "projection:";
+
+    @Autowired
+    private EventSubscriptionManager subscriptionManager;
+
+    @Autowired(required = false)
+    private List<Projection> projections = new ArrayList<>();
+
+    private final Map<String, Projection> projectionsByName = new HashMap<>();
+
+    @PostConstruct
+    public void registerProjections() {
+        // Each projection gets its own subscription and checkpoint, so projections advance
+        // and rebuild independently of each other
+        for (Projection projection : projections) {
+            if (projectionsByName.putIfAbsent(projection.getName(), projection) != null) {
+                throw new IllegalStateException("Duplicate projection name: " + projection.getName());
+            }
+            subscriptionManager.subscribe(new ProjectionSubscriber(projection));
+        }
+    }
+
+    public void rebuild(String projectionName) {
+        if (!projectionsByName.containsKey(projectionName)) {
+            throw new IllegalArgumentException("No projection found: " + projectionName);
+        }
+
+        log.info("Rebuilding projection {}", projectionName);
+        subscriptionManager.rebuildSubscription(SUBSCRIBER_PREFIX + projectionName);
+    }
+
+    public void rebuildAll() {
+        projectionsByName.keySet().forEach(this::rebuild);
+    }
+
+    public Set<String> getProjectionNames() {
+        return projectionsByName.keySet();
+    }
+
+    private static class ProjectionSubscriber implements EventSubscriber {
+
+        private final Projection projection;
+        private final Set<String> handledEventTypes;
+
+        ProjectionSubscriber(Projection projection) {
+            this.projection = projection;
+            this.handledEventTypes = projection.getHandledEventTypes();
+        }
+
+        @Override
+        public String getSubscriberId() {
+            return SUBSCRIBER_PREFIX + projection.getName();
+        }
+
+        @Override
+        public Set<String> getHandledEventTypes() {
+            return handledEventTypes;
+        }
+
+        @Override
+        public void reset() {
+            projection.reset();
+        }
+
+        @Override
+        public void handle(List<StoredEvent> events) {
+            for (StoredEvent event : events) {
+                if (handledEventTypes.contains(event.getEvent().getEventType())) {
+                    projection.handle(event);
+                }
+            }
+        }
+    }
+}
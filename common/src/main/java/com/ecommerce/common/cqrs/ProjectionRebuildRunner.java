@@ -0,0 +1,35 @@
+package com.ecommerce.common.cqrs;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+// Rebuilds projections at startup, e.g. java -jar order-service.jar --app.event-sourcing.replay.rebuild=all
+@Component
+@Slf4j
+public class ProjectionRebuildRunner implements ApplicationRunner {
+
+    @Autowired
+    private ProjectionEngine projectionEngine;
+
+    @Value("${app.event-sourcing.replay.rebuild:}")
+    private List<String> projectionsToRebuild;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (projectionsToRebuild.isEmpty()) {
+            return;
+        }
+
+        if (projectionsToRebuild.contains("all")) {
+            projectionEngine.rebuildAll();
+        } else {
+            projectionsToRebuild.forEach(projectionEngine::rebuild);
+        }
+    }
+}
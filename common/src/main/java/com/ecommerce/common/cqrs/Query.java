@@ -1,18 +1,22 @@
 package com.ecommerce.common.cqrs;
 
+import com.ecommerce.common.util.IdGenerator;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Data
 public abstract class Query<T> {
 
+    // Two queries asking for the same thing are equal, whenever and however often they are sent
+    @EqualsAndHashCode.Exclude
     private final String queryId;
+    @EqualsAndHashCode.Exclude
     private final LocalDateTime timestamp;
 
     protected Query() {
-        this.queryId = UUID.randomUUID().toString();
+        this.queryId = IdGenerator.newId();
         this.timestamp = LocalDateTime.now();
     }
 }
\ No newline at end of file
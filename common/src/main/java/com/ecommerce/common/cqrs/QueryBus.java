@@ -1,25 +1,75 @@
 package com.ecommerce.common.cqrs;
 
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Service;
 
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Service
-public class QueryBus {
+@Slf4j
+public class QueryBus implements SmartInitializingSingleton {
 
     @Autowired
     private ApplicationContext applicationContext;
 
-    private final Map<Class<?>, QueryHandler> handlers = new HashMap<>();
+    @Autowired
+    private ObjectProvider<QueryInterceptor> interceptors;
+
+    // Built once when the context is ready, dispatch is a lookup in an immutable map
+    private volatile Map<Class<?>, QueryHandler<?, ?>> handlers = Collections.emptyMap();
+
+    // The interceptors composed around dispatch, also built once
+    private volatile QueryInterceptor.Chain chain = this::dispatch;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<Class<?>, QueryHandler<?, ?>> resolved = new HashMap<>();
+
+        applicationContext.getBeansOfType(QueryHandler.class).forEach((beanName, handler) -> {
+            Class<?> queryType = resolveQueryType(handler);
+            if (queryType == null) {
+                log.warn("Ignoring query handler {}, its query type cannot be resolved", beanName);
+                return;
+            }
+
+            QueryHandler<?, ?> existing = resolved.putIfAbsent(queryType, handler);
+            if (existing != null) {
+                throw new IllegalStateException(String.format("Query %s has two handlers: %s and %s",
+                    queryType.getSimpleName(), existing.getClass().getName(), handler.getClass().getName()));
+            }
+        });
+
+        handlers = Map.copyOf(resolved);
+        log.info("Registered {} query handlers", handlers.size());
+
+        List<QueryInterceptor> ordered = interceptors.orderedStream().toList();
+        QueryInterceptor.Chain composed = this::dispatch;
+        for (int i = ordered.size() - 1; i >= 0; i--) {
+            QueryInterceptor interceptor = ordered.get(i);
+            QueryInterceptor.Chain next = composed;
+            composed = query -> interceptor.intercept(query, next);
+        }
+        chain = composed;
+        log.info("Registered {} query interceptors", ordered.size());
+    }
 
     @SuppressWarnings("unchecked")
     public <Q extends Query<R>, R> R send(Q query) {
-        QueryHandler<Q, R> handler = (QueryHandler<Q, R>) getHandler((Class<Q>) query.getClass());
+        return (R) chain.proceed(query);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Object dispatch(Query<?> query) {
+        QueryHandler handler = handlers.get(query.getClass());
         if (handler == null) {
             throw new IllegalArgumentException(
                 "No handler found for query: " + query.getClass().getSimpleName()
@@ -28,33 +78,9 @@ public class QueryBus {
         return handler.handle(query);
     }
 
-    @SuppressWarnings("unchecked")
-    private <Q extends Query<R>, R> QueryHandler<Q, R> getHandler(Class<Q> queryType) {
-        if (!handlers.containsKey(queryType)) {
-            QueryHandler<Q, R> handler = findHandler(queryType);
-            if (handler != null) {
-                handlers.put(queryType, handler);
-            }
-        }
-        return (QueryHandler<Q, R>) handlers.get(queryType);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <Q extends Query<R>, R> QueryHandler<Q, R> findHandler(Class<Q> queryType) {
-        Map<String, QueryHandler> handlerBeans = applicationContext.getBeansOfType(QueryHandler.class);
-
-        for (QueryHandler handler : handlerBeans.values()) {
-            Type[] genericInterfaces = handler.getClass().getGenericInterfaces();
-            for (Type genericInterface : genericInterfaces) {
-                if (genericInterface instanceof ParameterizedType) {
-                    ParameterizedType parameterizedType = (ParameterizedType) genericInterface;
-                    Type[] typeArguments = parameterizedType.getActualTypeArguments();
-                    if (typeArguments.length > 0 && typeArguments[0].equals(queryType)) {
-                        return handler;
-                    }
-                }
-            }
-        }
-        return null;
+    // Resolves Q of QueryHandler<Q, R> through proxies, CGLIB subclasses and handler superclasses
+    private Class<?> resolveQueryType(QueryHandler<?, ?> handler) {
+        Class<?> handlerClass = AopUtils.getTargetClass(handler);
+        return ResolvableType.forClass(handlerClass).as(QueryHandler.class).resolveGeneric(0);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.common.cqrs;
+
+// Wraps the dispatch of every query to its handler, see CommandInterceptor
+public interface QueryInterceptor {
+
+    Object intercept(Query<?> query, Chain chain);
+
+    @FunctionalInterface
+    interface Chain {
+        Object proceed(Query<?> query);
+    }
+}
@@ -0,0 +1,149 @@
+package com.ecommerce.common.cqrs;
+
+import com.ecommerce.common.event.EventsAppendedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Keeps the results of CacheableQuery queries and evicts them when events they declared as
+// invalidating are appended. Runs right inside the metrics interceptor, so hits are timed too.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class QueryResultCache implements QueryInterceptor {
+
+    @Value("${app.cqrs.query-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.cqrs.query-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${app.cqrs.query-cache.expire-after-write-seconds:300}")
+    private long expireAfterWriteSeconds;
+
+    private Cache<Query<?>, CachedResult> cache;
+
+    // Reverse indexes from an event type or aggregate id to the cached results it invalidates.
+    // They hold the entries themselves, so dropping a stale entry never touches a newer one
+    // cached for the same query.
+    private final Map<String, Set<CachedResult>> resultsByEventType = new ConcurrentHashMap<>();
+    private final Map<String, Set<CachedResult>> resultsByAggregateId = new ConcurrentHashMap<>();
+
+    // Bumped on every invalidating event, a result computed while it moved may already be stale
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS)
+            .evictionListener((Query<?> query, CachedResult cached, RemovalCause cause) -> unindex(cached))
+            .build();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object intercept(Query<?> query, Chain chain) {
+        if (!enabled || !(query instanceof CacheableQuery<?> cacheable)) {
+            return chain.proceed(query);
+        }
+
+        CachedResult cached = cache.getIfPresent(query);
+        if (cached != null) {
+            return cached.getResult();
+        }
+
+        long invalidationsBefore = invalidations.get();
+        Object result = chain.proceed(query);
+
+        CachedResult computed = new CachedResult(query, result, cacheable.invalidatingEventTypes(),
+            ((CacheableQuery<Object>) cacheable).invalidatingAggregateIds(result));
+        // Two concurrent misses both get here, the entry the second one replaces must leave the
+        // indexes too (eviction listeners are not told about replacements)
+        CachedResult replaced = cache.asMap().put(query, computed);
+        if (replaced != null) {
+            unindex(replaced);
+        }
+        index(computed);
+
+        // An event that arrived while the handler ran may not be reflected in its result
+        if (invalidations.get() != invalidationsBefore) {
+            evict(computed);
+        }
+        return result;
+    }
+
+    // Evicts after the appending transaction commits, so a reload sees the new events
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsAppended(EventsAppendedEvent event) {
+        event.getEventTypes().forEach(eventType -> invalidate(eventType, event.getAggregateId()));
+    }
+
+    // Also usable by listeners of events that were appended by another service
+    public void invalidate(String eventType, String aggregateId) {
+        if (!enabled) {
+            return;
+        }
+        invalidations.incrementAndGet();
+        evictAll(resultsByEventType.get(eventType));
+        evictAll(resultsByAggregateId.get(aggregateId));
+    }
+
+    private void evictAll(Set<CachedResult> results) {
+        if (results != null) {
+            results.forEach(this::evict);
+        }
+    }
+
+    private void evict(CachedResult cached) {
+        cache.asMap().remove(cached.getQuery(), cached);
+        unindex(cached);
+    }
+
+    private void index(CachedResult cached) {
+        cached.getEventTypes().forEach(eventType -> addToIndex(resultsByEventType, eventType, cached));
+        cached.getAggregateIds().forEach(aggregateId -> addToIndex(resultsByAggregateId, aggregateId, cached));
+    }
+
+    private void unindex(CachedResult cached) {
+        cached.getEventTypes().forEach(eventType -> removeFromIndex(resultsByEventType, eventType, cached));
+        cached.getAggregateIds().forEach(aggregateId -> removeFromIndex(resultsByAggregateId, aggregateId, cached));
+    }
+
+    private void addToIndex(Map<String, Set<CachedResult>> index, String key, CachedResult cached) {
+        index.compute(key, (k, results) -> {
+            Set<CachedResult> updated = results != null ? results : ConcurrentHashMap.newKeySet();
+            updated.add(cached);
+            return updated;
+        });
+    }
+
+    private void removeFromIndex(Map<String, Set<CachedResult>> index, String key, CachedResult cached) {
+        index.computeIfPresent(key, (k, results) -> {
+            results.remove(cached);
+            return results.isEmpty() ? null : results;
+        });
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class CachedResult {
+        private final Query<?> query;
+        private final Object result;
+        private final Set<String> eventTypes;
+        private final Set<String> aggregateIds;
+    }
+}
@@ -0,0 +1,83 @@
+package com.ecommerce.common.cqrs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+// Shared store, repeats are recognized whichever instance the gateway routes them to
+@Component
+@ConditionalOnProperty(name = "app.cqrs.idempotency.store", havingValue = "redis")
+public class RedisCommandStatusStore implements CommandStatusStore {
+
+    private static final String KEY_PREFIX = "command-status:";
+
+    // Compare and set, so only one of several concurrent retries replaces a failed status
+    private static final RedisScript<Long> REPLACE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+        "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) return 1 else return 0 end", Long.class);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.cqrs.idempotency.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    @Override
+    public Optional<CommandStatus> putIfAbsent(CommandStatus status) {
+        Boolean stored = redisTemplate.opsForValue()
+            .setIfAbsent(KEY_PREFIX + status.getCommandId(), serialize(status), Duration.ofMinutes(ttlMinutes));
+        return Boolean.TRUE.equals(stored) ? Optional.empty() : get(status.getCommandId());
+    }
+
+    @Override
+    public void put(CommandStatus status) {
+        redisTemplate.opsForValue()
+            .set(KEY_PREFIX + status.getCommandId(), serialize(status), Duration.ofMinutes(ttlMinutes));
+    }
+
+    @Override
+    public boolean replace(CommandStatus expected, CommandStatus updated) {
+        Long replaced = redisTemplate.execute(REPLACE_SCRIPT, List.of(KEY_PREFIX + expected.getCommandId()),
+            serialize(expected), serialize(updated), String.valueOf(Duration.ofMinutes(ttlMinutes).toMillis()));
+        return Long.valueOf(1L).equals(replaced);
+    }
+
+    @Override
+    public Optional<CommandStatus> get(String commandId) {
+        String value = redisTemplate.opsForValue().get(KEY_PREFIX + commandId);
+        if (value == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(objectMapper.readValue(value, CommandStatus.class));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize command status", e);
+        }
+    }
+
+    @Override
+    public void remove(String commandId) {
+        redisTemplate.delete(KEY_PREFIX + commandId);
+    }
+
+    private String serialize(CommandStatus status) {
+        try {
+            return objectMapper.writeValueAsString(status);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize command status", e);
+        }
+    }
+}
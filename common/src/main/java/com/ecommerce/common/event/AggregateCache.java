@@ -0,0 +1,89 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+@Component
+public class AggregateCache {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.event-sourcing.aggregate-cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.event-sourcing.aggregate-cache.maximum-size:10000}")
+    private long maximumSize;
+
+    @Value("${app.event-sourcing.aggregate-cache.expire-after-access-minutes:10}")
+    private long expireAfterAccessMinutes;
+
+    private Cache<String, CachedAggregate> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumSize(maximumSize)
+            .expireAfterAccess(expireAfterAccessMinutes, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // The aggregate state is kept as an immutable tree and every lookup hydrates a fresh instance,
+    // so callers can never mutate a shared aggregate or leak uncommitted events into the cache
+    public CachedAggregate capture(AggregateRoot aggregate) {
+        return new CachedAggregate(aggregate.getId(), aggregate.getVersion(), objectMapper.valueToTree(aggregate));
+    }
+
+    public void put(String aggregateType, CachedAggregate cachedAggregate) {
+        cache.put(cacheKey(aggregateType, cachedAggregate.getAggregateId()), cachedAggregate);
+    }
+
+    public <T extends AggregateRoot> Optional<T> get(String aggregateType, String aggregateId, Class<T> aggregateClass) {
+        CachedAggregate cachedAggregate = cache.getIfPresent(cacheKey(aggregateType, aggregateId));
+        if (cachedAggregate == null) {
+            return Optional.empty();
+        }
+
+        try {
+            T aggregate = objectMapper.treeToValue(cachedAggregate.getState(), aggregateClass);
+            aggregate.setId(cachedAggregate.getAggregateId());
+            aggregate.setVersion(cachedAggregate.getVersion());
+            return Optional.of(aggregate);
+        } catch (Exception e) {
+            invalidate(aggregateType, aggregateId);
+            return Optional.empty();
+        }
+    }
+
+    public void invalidate(String aggregateType, String aggregateId) {
+        cache.invalidate(cacheKey(aggregateType, aggregateId));
+    }
+
+    private String cacheKey(String aggregateType, String aggregateId) {
+        return aggregateType + ":" + aggregateId;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class CachedAggregate {
+        private final String aggregateId;
+        private final Long version;
+        private final JsonNode state;
+    }
+}
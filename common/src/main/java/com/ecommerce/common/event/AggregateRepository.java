@@ -1,18 +1,46 @@
 package com.ecommerce.common.event;
 
-import com.ecommerce.common.messaging.EventPublisher;
+import com.ecommerce.common.messaging.EventOutbox;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
+@Slf4j
 public abstract class AggregateRepository<T extends AggregateRoot> {
 
     @Autowired
     private EventStore eventStore;
 
     @Autowired
-    private EventPublisher eventPublisher;
+    private SnapshotStore snapshotStore;
 
+    @Autowired
+    private EventOutbox eventOutbox;
+
+    @Autowired
+    private AggregateCache aggregateCache;
+
+    @Value("${app.event-sourcing.snapshot.frequency:50}")
+    private int snapshotFrequency;
+
+    @Transactional
     public void save(T aggregate) {
         List<DomainEvent> uncommittedEvents = aggregate.getUncommittedEvents();
 
@@ -24,27 +52,241 @@ public abstract class AggregateRepository<T extends AggregateRoot> {
                 aggregate.getVersion() - uncommittedEvents.size()
             );
 
-            // Publish events to message queue
-            uncommittedEvents.forEach(eventPublisher::publishEvent);
+            // Queue events for publishing in the same transaction, the outbox relay sends them
+            eventOutbox.enqueue(uncommittedEvents);
 
             // Mark events as committed
             aggregate.markEventsAsCommitted();
+
+            // Snapshots and cache entries must never reflect events that could still be rolled back
+            if (shouldTakeSnapshot(aggregate, uncommittedEvents.size())) {
+                SnapshotEntry snapshot = captureSnapshot(aggregate);
+                if (snapshot != null) {
+                    runAfterCommit(() -> takeSnapshot(snapshot));
+                }
+            }
+
+            if (aggregateCache.isEnabled()) {
+                AggregateCache.CachedAggregate cachedAggregate = aggregateCache.capture(aggregate);
+                runAfterCommit(() -> aggregateCache.put(getAggregateType(), cachedAggregate));
+            }
         }
     }
 
     public T findById(String id) {
+        if (aggregateCache.isEnabled()) {
+            T cached = loadFromCache(id);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        T aggregate = loadFromStore(id);
+
+        if (aggregate != null && aggregateCache.isEnabled()) {
+            aggregateCache.put(getAggregateType(), aggregateCache.capture(aggregate));
+        }
+        return aggregate;
+    }
+
+    // Reconstructs the aggregate as it was at the given version, starting from the nearest
+    // snapshot at or below it so only the events in between are replayed
+    public T findAsOf(String id, Long version) {
+        T aggregate = loadHistoricalSnapshot(id,
+            () -> snapshotStore.getLatestSnapshotUntil(id, version, getAggregateClass()));
+        long fromVersion = aggregate != null ? aggregate.getVersion() : 0L;
+        return hydrate(aggregate, eventStore.getEventsForAggregateUntil(id, fromVersion, version));
+    }
+
+    // Reconstructs the aggregate from the events stored up to and including the given time
+    public T findAsOf(String id, LocalDateTime timestamp) {
+        T aggregate = loadHistoricalSnapshot(id,
+            () -> snapshotStore.getLatestSnapshotUntil(id, timestamp, getAggregateClass()));
+        long fromVersion = aggregate != null ? aggregate.getVersion() : 0L;
+        return hydrate(aggregate, eventStore.getEventsForAggregateUntil(id, fromVersion, timestamp));
+    }
+
+    // Loads many aggregates with one snapshot query and one event query instead of one round trip
+    // per aggregate. Aggregates that do not exist are left out, the rest keep the requested order.
+    public List<T> findAllById(Collection<String> ids) {
+        List<String> distinctIds = ids.stream().distinct().collect(Collectors.toList());
+        if (distinctIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Start each aggregate from the newest state at hand, cached or snapshotted, and fetch
+        // only the events appended after it
+        Map<String, T> baseStates = new HashMap<>();
+        if (aggregateCache.isEnabled()) {
+            for (String id : distinctIds) {
+                aggregateCache.get(getAggregateType(), id, getAggregateClass())
+                    .ifPresent(cached -> baseStates.put(id, cached));
+            }
+        }
+        Set<String> uncachedIds = distinctIds.stream()
+            .filter(id -> !baseStates.containsKey(id))
+            .collect(Collectors.toSet());
+        baseStates.putAll(loadSnapshots(uncachedIds));
+
+        Map<String, Long> afterVersions = new LinkedHashMap<>();
+        for (String id : distinctIds) {
+            T base = baseStates.get(id);
+            afterVersions.put(id, base != null ? base.getVersion() : 0L);
+        }
+        Map<String, List<DomainEvent>> eventsById = eventStore.getEventsForAggregatesFromVersions(afterVersions);
+
+        // Aggregates share no state, so hydrate them in parallel
+        Map<String, T> aggregates = new ConcurrentHashMap<>();
+        distinctIds.parallelStream().forEach(id -> {
+            T aggregate = hydrate(baseStates.get(id), eventsById.getOrDefault(id, Collections.emptyList()));
+            if (aggregate != null) {
+                aggregates.put(id, aggregate);
+            }
+        });
+
+        if (aggregateCache.isEnabled()) {
+            aggregates.forEach((id, aggregate) -> {
+                if (uncachedIds.contains(id) || eventsById.containsKey(id)) {
+                    aggregateCache.put(getAggregateType(), aggregateCache.capture(aggregate));
+                }
+            });
+        }
+
+        return distinctIds.stream()
+            .map(aggregates::get)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    private T hydrate(T base, List<DomainEvent> events) {
+        if (base == null && events.isEmpty()) {
+            return null;
+        }
+        T aggregate = base != null ? base : createNewAggregate();
+        aggregate.replayEvents(events);
+        return aggregate;
+    }
+
+    private T loadFromStore(String id) {
+        T aggregate = loadSnapshot(id).orElse(null);
+
+        if (aggregate != null) {
+            // Only replay the events appended after the snapshot
+            aggregate.replayEvents(eventStore.getEventsForAggregateFromVersion(id, aggregate.getVersion()));
+            return aggregate;
+        }
+
         List<DomainEvent> events = eventStore.getEventsForAggregate(id);
 
         if (events.isEmpty()) {
             return null;
         }
 
-        T aggregate = createNewAggregate();
+        aggregate = createNewAggregate();
         aggregate.replayEvents(events);
         return aggregate;
     }
 
+    private T loadFromCache(String id) {
+        T aggregate = aggregateCache.get(getAggregateType(), id, getAggregateClass())
+            .orElse(null);
+
+        if (aggregate == null) {
+            return null;
+        }
+
+        long storeVersion = eventStore.getCurrentVersion(id);
+        if (aggregate.getVersion() > storeVersion) {
+            // The cached state is ahead of the store, it cannot be trusted
+            aggregateCache.invalidate(getAggregateType(), id);
+            return null;
+        }
+
+        if (aggregate.getVersion() < storeVersion) {
+            // Another instance appended events, catch up on the delta only
+            aggregate.replayEvents(eventStore.getEventsForAggregateFromVersion(id, aggregate.getVersion()));
+            aggregateCache.put(getAggregateType(), aggregateCache.capture(aggregate));
+        }
+        return aggregate;
+    }
+
+    private void runAfterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    // Snapshot every time the version crosses a multiple of the configured frequency.
+    // Subclasses can override this to apply their own snapshot policy.
+    protected boolean shouldTakeSnapshot(T aggregate, int committedEventCount) {
+        if (snapshotFrequency <= 0) {
+            return false;
+        }
+        long currentVersion = aggregate.getVersion();
+        long previousVersion = currentVersion - committedEventCount;
+        return currentVersion / snapshotFrequency > previousVersion / snapshotFrequency;
+    }
+
+    private SnapshotEntry captureSnapshot(AggregateRoot aggregate) {
+        try {
+            return snapshotStore.capture(aggregate, getAggregateType());
+        } catch (Exception e) {
+            // Snapshots are an optimization only, never fail the save because of one
+            log.warn("Failed to capture snapshot of aggregate {} at version {}", aggregate.getId(), aggregate.getVersion(), e);
+            return null;
+        }
+    }
+
+    private void takeSnapshot(SnapshotEntry snapshot) {
+        try {
+            snapshotStore.saveSnapshot(snapshot);
+        } catch (Exception e) {
+            // Snapshots are an optimization only, the events are already committed
+            log.warn("Failed to snapshot aggregate {} at version {}", snapshot.getAggregateId(), snapshot.getVersion(), e);
+        }
+    }
+
+    private Optional<T> loadSnapshot(String id) {
+        try {
+            return snapshotStore.getLatestSnapshot(id, getAggregateClass());
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable snapshot for aggregate {}, replaying full history", id, e);
+            return Optional.empty();
+        }
+    }
+
+    private T loadHistoricalSnapshot(String id, Supplier<Optional<T>> snapshotLoader) {
+        try {
+            return snapshotLoader.get().orElse(null);
+        } catch (Exception e) {
+            log.warn("Ignoring unreadable snapshot for aggregate {}, replaying full history", id, e);
+            return null;
+        }
+    }
+
+    private Map<String, T> loadSnapshots(Collection<String> ids) {
+        try {
+            return snapshotStore.getLatestSnapshots(ids, getAggregateClass());
+        } catch (Exception e) {
+            log.warn("Ignoring snapshots for {} aggregates, replaying full history", ids.size(), e);
+            return Collections.emptyMap();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Class<T> getAggregateClass() {
+        return (Class<T>) createNewAggregate().getClass();
+    }
+
     protected abstract T createNewAggregate();
 
     protected abstract String getAggregateType();
-}
\ No newline at end of file
+}
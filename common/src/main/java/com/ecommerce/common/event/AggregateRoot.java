@@ -1,5 +1,7 @@
 package com.ecommerce.common.event;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -23,6 +25,7 @@ public abstract class AggregateRoot {
         return version;
     }
 
+    @JsonIgnore
     public List<DomainEvent> getUncommittedEvents() {
         return new ArrayList<>(uncommittedEvents);
     }
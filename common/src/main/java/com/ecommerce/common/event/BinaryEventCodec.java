@@ -0,0 +1,100 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class BinaryEventCodec implements EventCodec {
+
+    private final String name;
+    private final ObjectMapper objectMapper;
+    private final boolean compressed;
+    private final EventTypeRegistry eventTypeRegistry;
+    private final Map<String, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public BinaryEventCodec(String name, ObjectMapper objectMapper, boolean compressed,
+                            EventTypeRegistry eventTypeRegistry) {
+        this.name = name;
+        this.objectMapper = objectMapper;
+        this.compressed = compressed;
+        this.eventTypeRegistry = eventTypeRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void encode(DomainEvent event, EventStoreEntry target) {
+        try {
+            if (!compressed) {
+                target.setEventPayload(objectMapper.writeValueAsBytes(event));
+                return;
+            }
+
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (OutputStream out = new GZIPOutputStream(buffer)) {
+                objectMapper.writeValue(out, event);
+            }
+            target.setEventPayload(buffer.toByteArray());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize event", e);
+        }
+    }
+
+    @Override
+    public DomainEvent decode(EventStoreEntry source) {
+        ObjectReader reader = getReader(source.getEventType());
+
+        try {
+            if (!compressed) {
+                return reader.readValue(source.getEventPayload());
+            }
+
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(source.getEventPayload()))) {
+                return reader.readValue(in);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+
+    @Override
+    public JsonNode decodeTree(EventStoreEntry source) {
+        try {
+            if (!compressed) {
+                return objectMapper.readTree(source.getEventPayload());
+            }
+
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(source.getEventPayload()))) {
+                return objectMapper.readTree(in);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+
+    @Override
+    public DomainEvent bind(String eventType, JsonNode tree) {
+        try {
+            return getReader(eventType).readValue(tree);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+
+    private ObjectReader getReader(String eventType) {
+        return readers.computeIfAbsent(eventType,
+            type -> objectMapper.readerFor(eventTypeRegistry.getEventClass(type)));
+    }
+}
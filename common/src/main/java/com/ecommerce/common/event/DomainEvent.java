@@ -1,11 +1,11 @@
 package com.ecommerce.common.event;
 
+import com.ecommerce.common.util.IdGenerator;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -21,7 +21,7 @@ public abstract class DomainEvent {
     private LocalDateTime occurredOn;
 
     protected DomainEvent(String aggregateId, String aggregateType, Long version) {
-        this.eventId = UUID.randomUUID().toString();
+        this.eventId = IdGenerator.newId();
         this.eventType = this.getClass().getSimpleName();
         this.aggregateId = aggregateId;
         this.aggregateType = aggregateType;
@@ -0,0 +1,222 @@
+package com.ecommerce.common.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+// Moves the events of finished aggregates from event_store to event_store_archive, re-encoded with
+// a compressed codec, and leaves a final snapshot behind. findById keeps working from the snapshot,
+// full history reads fall back to the archive, and the hot table and its indexes stay small.
+@Component
+@ConditionalOnProperty(name = "app.event-sourcing.store", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class EventArchiver implements SmartLifecycle {
+
+    private static final String SELECT_EVENTS_SQL =
+        "SELECT event_id, event_type, aggregate_id, aggregate_type, version, event_data, event_payload, codec, " +
+        "schema_version, global_position, created_at, created_by FROM event_store " +
+        "WHERE aggregate_id = ANY(?) ORDER BY aggregate_id, version ASC FOR UPDATE";
+
+    private static final String INSERT_ARCHIVE_SQL =
+        "INSERT INTO event_store_archive (event_id, event_type, aggregate_id, aggregate_type, version, " +
+        "event_data, event_payload, codec, schema_version, global_position, created_at, created_by, archived_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // By event id, so an event appended after the SELECT above is never deleted without a copy
+    private static final String DELETE_EVENTS_SQL =
+        "DELETE FROM event_store WHERE event_id = ANY(?)";
+
+    @Autowired(required = false)
+    private List<RetentionPolicy> retentionPolicies = new ArrayList<>();
+
+    @Autowired
+    private SnapshotStore snapshotStore;
+
+    @Autowired
+    private EventCodecRegistry eventCodecRegistry;
+
+    @Autowired
+    private EventUpcasterChain eventUpcasterChain;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.event-sourcing.retention.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.event-sourcing.retention.terminal-age-days:90}")
+    private long terminalAgeDays;
+
+    @Value("${app.event-sourcing.retention.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.event-sourcing.retention.interval-ms:3600000}")
+    private long intervalMs;
+
+    @Value("${app.event-sourcing.retention.archive-codec:json-gzip}")
+    private String archiveCodecName;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running = false;
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled && !retentionPolicies.isEmpty();
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::archiveAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void archiveAll() {
+        LocalDateTime terminalBefore = LocalDateTime.now().minusDays(terminalAgeDays);
+
+        for (RetentionPolicy policy : retentionPolicies) {
+            String aggregateType = policy.getAggregateRepository().getAggregateType();
+            try {
+                long archived = 0;
+                List<String> ids;
+                do {
+                    ids = policy.findArchivableAggregateIds(terminalBefore, batchSize);
+                    int batch = archiveBatch(policy.getAggregateRepository(), ids);
+                    archived += batch;
+                    if (batch == 0) {
+                        break; // Nothing in the batch could be archived, retry on the next run
+                    }
+                } while (running && ids.size() == batchSize);
+
+                if (archived > 0) {
+                    log.info("Archived the events of {} {} aggregates", archived, aggregateType);
+                }
+            } catch (Exception e) {
+                log.error("Archiving {} aggregates failed, will retry", aggregateType, e);
+            }
+        }
+    }
+
+    private int archiveBatch(AggregateRepository<?> repository, List<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        // Make sure each aggregate has a snapshot at its final version before its events leave
+        Map<String, Long> finalVersions = new HashMap<>();
+        Map<String, ? extends AggregateRoot> snapshots =
+            snapshotStore.getLatestSnapshots(ids, repository.getAggregateClass());
+        for (AggregateRoot aggregate : repository.findAllById(ids)) {
+            AggregateRoot snapshot = snapshots.get(aggregate.getId());
+            if (snapshot == null || !snapshot.getVersion().equals(aggregate.getVersion())) {
+                snapshotStore.saveSnapshot(aggregate, repository.getAggregateType());
+            }
+            finalVersions.put(aggregate.getId(), aggregate.getVersion());
+        }
+
+        EventCodec archiveCodec = eventCodecRegistry.getCodec(archiveCodecName);
+        Integer archived = new TransactionTemplate(transactionManager).execute(status -> {
+            String[] candidates = finalVersions.keySet().toArray(new String[0]);
+            List<EventStoreEntry> entries = jdbcTemplate.query(SELECT_EVENTS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", candidates)),
+                (rs, rowNum) -> {
+                    EventStoreEntry entry = new EventStoreEntry();
+                    entry.setEventId(rs.getString("event_id"));
+                    entry.setEventType(rs.getString("event_type"));
+                    entry.setAggregateId(rs.getString("aggregate_id"));
+                    entry.setAggregateType(rs.getString("aggregate_type"));
+                    entry.setVersion(rs.getLong("version"));
+                    entry.setEventData(rs.getString("event_data"));
+                    entry.setEventPayload(rs.getBytes("event_payload"));
+                    entry.setCodec(rs.getString("codec"));
+                    entry.setSchemaVersion(rs.getInt("schema_version"));
+                    entry.setGlobalPosition(rs.getLong("global_position"));
+                    entry.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+                    entry.setCreatedBy(rs.getString("created_by"));
+                    return entry;
+                });
+
+            Map<String, List<EventStoreEntry>> entriesByAggregate = entries.stream()
+                .collect(Collectors.groupingBy(EventStoreEntry::getAggregateId));
+
+            // Skip aggregates that received events after their final snapshot was taken
+            List<String> archivable = entriesByAggregate.entrySet().stream()
+                .filter(group -> {
+                    List<EventStoreEntry> events = group.getValue();
+                    return events.get(events.size() - 1).getVersion().equals(finalVersions.get(group.getKey()));
+                })
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+
+            Timestamp archivedAt = Timestamp.valueOf(LocalDateTime.now());
+            List<Object[]> rows = new ArrayList<>();
+            List<String> copiedEventIds = new ArrayList<>();
+            for (String aggregateId : archivable) {
+                for (EventStoreEntry entry : entriesByAggregate.get(aggregateId)) {
+                    copiedEventIds.add(entry.getEventId());
+                    EventStoreEntry archivedEntry = new EventStoreEntry();
+                    archiveCodec.encode(eventCodecRegistry.decode(entry), archivedEntry);
+                    rows.add(new Object[] {
+                        entry.getEventId(),
+                        entry.getEventType(),
+                        entry.getAggregateId(),
+                        entry.getAggregateType(),
+                        entry.getVersion(),
+                        archivedEntry.getEventData(),
+                        archivedEntry.getEventPayload(),
+                        archiveCodec.getName(),
+                        eventUpcasterChain.getCurrentVersion(entry.getEventType()),
+                        entry.getGlobalPosition(),
+                        Timestamp.valueOf(entry.getCreatedAt()),
+                        entry.getCreatedBy(),
+                        archivedAt
+                    });
+                }
+            }
+
+            if (!archivable.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_ARCHIVE_SQL, rows);
+                String[] archivedEventIds = copiedEventIds.toArray(new String[0]);
+                jdbcTemplate.update(DELETE_EVENTS_SQL,
+                    ps -> ps.setArray(1, ps.getConnection().createArrayOf("varchar", archivedEventIds)));
+            }
+            return archivable.size();
+        });
+
+        return archived == null ? 0 : archived;
+    }
+}
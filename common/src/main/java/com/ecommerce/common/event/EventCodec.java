@@ -0,0 +1,17 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+public interface EventCodec {
+
+    String getName();
+
+    void encode(DomainEvent event, EventStoreEntry target);
+
+    DomainEvent decode(EventStoreEntry source);
+
+    // Tree access for payloads that have to be upcasted before they can be bound to the event class
+    JsonNode decodeTree(EventStoreEntry source);
+
+    DomainEvent bind(String eventType, JsonNode tree);
+}
@@ -0,0 +1,88 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@Slf4j
+public class EventCodecRegistry {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EventTypeRegistry eventTypeRegistry;
+
+    @Autowired
+    private EventUpcasterChain eventUpcasterChain;
+
+    @Value("${app.event-sourcing.codec:json}")
+    private String writeCodecName;
+
+    private final Map<String, EventCodec> codecs = new HashMap<>();
+
+    private EventCodec writeCodec;
+
+    @PostConstruct
+    public void registerCodecs() {
+        ObjectMapper smileMapper = SmileMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+        ObjectMapper cborMapper = CBORMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+        register(new JsonEventCodec(objectMapper, eventTypeRegistry));
+        register(new BinaryEventCodec("json-gzip", objectMapper, true, eventTypeRegistry));
+        register(new BinaryEventCodec("smile", smileMapper, false, eventTypeRegistry));
+        register(new BinaryEventCodec("smile-gzip", smileMapper, true, eventTypeRegistry));
+        register(new BinaryEventCodec("cbor", cborMapper, false, eventTypeRegistry));
+        register(new BinaryEventCodec("cbor-gzip", cborMapper, true, eventTypeRegistry));
+
+        writeCodec = getCodec(writeCodecName);
+        log.info("Writing events with the {} codec", writeCodec.getName());
+    }
+
+    private void register(EventCodec codec) {
+        codecs.put(codec.getName(), codec);
+    }
+
+    public EventCodec getWriteCodec() {
+        return writeCodec;
+    }
+
+    public EventCodec getCodec(String name) {
+        // Rows written before codecs were introduced have no codec and are plain JSON
+        EventCodec codec = codecs.get(name == null ? JsonEventCodec.NAME : name);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown event codec: " + name);
+        }
+        return codec;
+    }
+
+    // Decodes a stored event with the codec it was written with, upcasting older schema versions
+    public DomainEvent decode(EventStoreEntry entry) {
+        EventCodec codec = getCodec(entry.getCodec());
+        if (!eventUpcasterChain.requiresUpcast(entry.getEventType(), entry.getSchemaVersion())) {
+            return codec.decode(entry);
+        }
+
+        // Older schema versions are migrated as a tree on read, the stored row is left untouched
+        JsonNode upcasted = eventUpcasterChain.upcast(entry.getEventType(), entry.getSchemaVersion(),
+            codec.decodeTree(entry));
+        return codec.bind(entry.getEventType(), upcasted);
+    }
+}
@@ -0,0 +1,201 @@
+package com.ecommerce.common.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+@Service
+@Slf4j
+public class EventReplayer {
+
+    private static final List<StoredEvent> END_OF_REPLAY = Collections.emptyList();
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.event-sourcing.replay.partitions:0}")
+    private int configuredPartitions;
+
+    @Value("${app.event-sourcing.replay.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.event-sourcing.replay.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${app.event-sourcing.replay.progress-log-interval-ms:5000}")
+    private long progressLogIntervalMs;
+
+    @Value("${app.event-sourcing.subscriptions.gap-rescan-ms:600000}")
+    private long gapRescanMs;
+
+    @Value("${app.event-sourcing.subscriptions.max-skipped-positions:10000}")
+    private int maxSkippedPositions;
+
+    private final Map<String, ReplayProgress> replays = new ConcurrentHashMap<>();
+
+    // Replays the store up to its current head. Events are routed to partitions by aggregate id
+    // hash and each partition applies its events in order on its own thread, so events of one
+    // aggregate are always handled in sequence while different aggregates replay concurrently.
+    // The handler must therefore be safe to call from several threads for different aggregates.
+    // Recent holes in the sequence are reported in the progress, a subscription continuing from
+    // the head keeps checking them for transactions that commit after the replay read past them.
+    public ReplayProgress replay(String name, Set<String> eventTypes, Consumer<StoredEvent> handler) {
+        int partitions = configuredPartitions > 0 ? configuredPartitions : Runtime.getRuntime().availableProcessors();
+        ReplayProgress progress = new ReplayProgress(name, eventStore.getHeadPosition(), partitions);
+        replays.put(name, progress);
+
+        List<BlockingQueue<List<StoredEvent>>> queues = new ArrayList<>(partitions);
+        List<Future<?>> workers = new ArrayList<>(partitions);
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+
+        try {
+            for (int i = 0; i < partitions; i++) {
+                BlockingQueue<List<StoredEvent>> queue = new ArrayBlockingQueue<>(queueCapacity);
+                queues.add(queue);
+                workers.add(executor.submit(() -> replayPartition(queue, handler, progress)));
+            }
+
+            readPartitioned(eventTypes, queues, workers, progress);
+
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            progress.finish(null);
+            log.info("Replay finished, {}", progress);
+        } catch (Exception e) {
+            workers.forEach(worker -> worker.cancel(true));
+            progress.finish(e.getMessage());
+            log.error("Replay failed, {}", progress, e);
+            throw new IllegalStateException("Replay " + name + " failed", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        return progress;
+    }
+
+    public ReplayProgress getProgress(String name) {
+        return replays.get(name);
+    }
+
+    public List<ReplayProgress> getAllProgress() {
+        return new ArrayList<>(replays.values());
+    }
+
+    private void readPartitioned(Set<String> eventTypes, List<BlockingQueue<List<StoredEvent>>> queues,
+                                 List<Future<?>> workers, ReplayProgress progress) throws Exception {
+        int partitions = queues.size();
+        long position = 0L;
+        long expected = 1L;
+        long nextProgressLog = System.currentTimeMillis() + progressLogIntervalMs;
+
+        while (position < progress.getHeadPosition()) {
+            List<StoredEvent> page = eventStore.readAllEventsIncludingArchivedFrom(position, batchSize);
+            if (page.isEmpty()) {
+                break;
+            }
+
+            List<List<StoredEvent>> chunks = new ArrayList<>(partitions);
+            for (int i = 0; i < partitions; i++) {
+                chunks.add(new ArrayList<>());
+            }
+
+            for (StoredEvent storedEvent : page) {
+                if (storedEvent.getGlobalPosition() > progress.getHeadPosition()) {
+                    break;
+                }
+                position = storedEvent.getGlobalPosition();
+                if (position != expected) {
+                    recordUnfilled(progress, expected, storedEvent);
+                }
+                expected = position + 1;
+                if (eventTypes == null || eventTypes.contains(storedEvent.getEvent().getEventType())) {
+                    int partition = Math.floorMod(storedEvent.getEvent().getAggregateId().hashCode(), partitions);
+                    chunks.get(partition).add(storedEvent);
+                }
+            }
+
+            for (int i = 0; i < partitions; i++) {
+                if (!chunks.get(i).isEmpty()) {
+                    enqueue(queues.get(i), chunks.get(i), workers.get(i));
+                }
+            }
+
+            progress.getReadPosition().set(position);
+            if (System.currentTimeMillis() >= nextProgressLog) {
+                log.info("Replay in progress, {}", progress);
+                nextProgressLog = System.currentTimeMillis() + progressLogIntervalMs;
+            }
+
+            if (page.size() < batchSize) {
+                break;
+            }
+        }
+
+        for (int i = 0; i < partitions; i++) {
+            enqueue(queues.get(i), END_OF_REPLAY, workers.get(i));
+        }
+    }
+
+    private void recordUnfilled(ReplayProgress progress, long fromPosition, StoredEvent next) {
+        // Same window as the subscriptions use, older holes are rolled back appends
+        if (Duration.between(next.getStoredAt(), LocalDateTime.now()).toMillis() >= gapRescanMs) {
+            return;
+        }
+        for (long unfilled = fromPosition; unfilled < next.getGlobalPosition(); unfilled++) {
+            if (progress.getUnfilledPositions().size() >= maxSkippedPositions) {
+                log.warn("Replay {} found too many unfilled positions, not rescanning from {}",
+                    progress.getName(), unfilled);
+                return;
+            }
+            progress.getUnfilledPositions().add(unfilled);
+        }
+    }
+
+    private void enqueue(BlockingQueue<List<StoredEvent>> queue, List<StoredEvent> chunk, Future<?> worker)
+            throws Exception {
+        // Bounded queues keep the reader from running ahead of slow partitions
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (worker.isDone()) {
+                worker.get(); // Surfaces the failure of the partition
+                throw new IllegalStateException("Replay partition stopped unexpectedly");
+            }
+        }
+    }
+
+    private Void replayPartition(BlockingQueue<List<StoredEvent>> queue, Consumer<StoredEvent> handler,
+                                 ReplayProgress progress) throws InterruptedException {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        while (true) {
+            List<StoredEvent> chunk = queue.take();
+            if (chunk == END_OF_REPLAY) {
+                return null;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> chunk.forEach(handler));
+            progress.getEventsReplayed().addAndGet(chunk.size());
+        }
+    }
+}
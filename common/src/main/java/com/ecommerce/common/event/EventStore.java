@@ -1,6 +1,10 @@
 package com.ecommerce.common.event;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public interface EventStore {
 
@@ -10,7 +14,29 @@ public interface EventStore {
 
     List<DomainEvent> getEventsForAggregateFromVersion(String aggregateId, Long version);
 
+    List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, Long untilVersion);
+
+    List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, LocalDateTime until);
+
+    Map<String, List<DomainEvent>> getEventsForAggregatesFromVersions(Map<String, Long> afterVersions);
+
+    Long getCurrentVersion(String aggregateId);
+
     List<DomainEvent> getAllEvents();
 
     List<DomainEvent> getEventsByType(String eventType);
+
+    Stream<DomainEvent> streamAllEvents();
+
+    Stream<DomainEvent> streamEventsByType(String eventType);
+
+    List<StoredEvent> readAllEventsFrom(long afterPosition, int maxCount);
+
+    // The events at the given positions that exist, ordered by position
+    List<StoredEvent> readEventsAtPositions(Collection<Long> positions);
+
+    // Like readAllEventsFrom, but also returns events moved to the archive, for full rebuilds
+    List<StoredEvent> readAllEventsIncludingArchivedFrom(long afterPosition, int maxCount);
+
+    Long getHeadPosition();
 }
\ No newline at end of file
@@ -30,9 +30,21 @@ public class EventStoreEntry extends BaseEntity {
     @Column(name = "version", nullable = false)
     private Long version;
 
-    @Column(name = "event_data", columnDefinition = "TEXT", nullable = false)
+    @Column(name = "event_data", columnDefinition = "TEXT")
     private String eventData;
 
+    @Column(name = "event_payload", columnDefinition = "BYTEA")
+    private byte[] eventPayload;
+
+    @Column(name = "codec", nullable = false, length = 32)
+    private String codec;
+
+    @Column(name = "schema_version", nullable = false)
+    private Integer schemaVersion;
+
+    @Column(name = "global_position", insertable = false, updatable = false)
+    private Long globalPosition;
+
     @Version
     private Long entityVersion;
 }
\ No newline at end of file
@@ -1,15 +1,36 @@
 package com.ecommerce.common.event;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Service
+@ConditionalOnProperty(name = "app.event-sourcing.store", havingValue = "jdbc", matchIfMissing = true)
 @Transactional
 public class EventStoreImpl implements EventStore {
 
@@ -17,56 +38,250 @@ public class EventStoreImpl implements EventStore {
     private EventStoreRepository eventStoreRepository;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventCodecRegistry eventCodecRegistry;
+
+    @Autowired
+    private EventUpcasterChain eventUpcasterChain;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Autowired
+    @Qualifier("auditorProvider")
+    private AuditorAware<String> auditorProvider;
+
+    private static final String AGGREGATE_VERSION_CONSTRAINT = "uk_event_store_aggregate_version";
+
+    private static final String INSERT_EVENT_SQL =
+        "INSERT INTO event_store (event_id, event_type, aggregate_id, aggregate_type, version, " +
+        "event_data, event_payload, codec, schema_version, entity_version, created_at, created_by) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ?)";
+
+    private static final String STREAM_ALL_SQL =
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at FROM event_store " +
+        "WHERE global_position > ? ORDER BY global_position ASC LIMIT ?";
+
+    private static final String READ_AT_POSITIONS_SQL =
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at FROM event_store " +
+        "WHERE global_position = ANY(?) ORDER BY global_position ASC";
+
+    private static final String STREAM_BY_TYPE_SQL =
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at FROM event_store " +
+        "WHERE event_type = ? AND global_position > ? ORDER BY global_position ASC LIMIT ?";
+
+    // Joins against the requested (aggregate_id, after_version) pairs so the events of many
+    // aggregates are fetched in a single round trip, each starting after its own base version.
+    // Archived events are merged in like the single aggregate reads do, a version present in both
+    // tables is taken from event_store.
+    private static final String MULTI_AGGREGATE_SQL =
+        "WITH requested(aggregate_id, after_version) AS (SELECT * FROM unnest(?::varchar[], ?::bigint[])) " +
+        "SELECT aggregate_id, global_position, event_type, event_data, event_payload, codec, schema_version, created_at FROM (" +
+        "SELECT e.aggregate_id, e.version, e.global_position, e.event_type, e.event_data, e.event_payload, e.codec, e.schema_version, e.created_at " +
+        "FROM event_store e JOIN requested r ON e.aggregate_id = r.aggregate_id AND e.version > r.after_version " +
+        "UNION ALL SELECT a.aggregate_id, a.version, a.global_position, a.event_type, a.event_data, a.event_payload, a.codec, a.schema_version, a.created_at " +
+        "FROM event_store_archive a JOIN requested r ON a.aggregate_id = r.aggregate_id AND a.version > r.after_version " +
+        "WHERE NOT EXISTS (SELECT 1 FROM event_store e WHERE e.aggregate_id = a.aggregate_id AND e.version = a.version)" +
+        ") events ORDER BY aggregate_id, version ASC";
+
+    private static final String STREAM_ALL_INCLUDING_ARCHIVED_SQL =
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at FROM (" +
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at " +
+        "FROM event_store WHERE global_position > ? " +
+        "UNION ALL SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at " +
+        "FROM event_store_archive WHERE global_position > ?) events ORDER BY global_position ASC LIMIT ?";
+
+    // EventArchiver moves the events of an aggregate out of event_store up to its final version.
+    // An aggregate can still receive events later, so its history is the archived prefix followed
+    // by whatever event_store holds, and reads merge the archived part of the requested range.
+    private static final String ARCHIVED_EVENTS_SQL =
+        "SELECT global_position, event_type, event_data, event_payload, codec, schema_version, created_at " +
+        "FROM event_store_archive WHERE aggregate_id = ? AND version > ? AND version < ? ";
+
+    private static final String ARCHIVED_VERSION_SQL =
+        "SELECT COALESCE(MAX(version), 0) FROM event_store_archive WHERE aggregate_id = ?";
+
+    private static final RowMapper<EventStoreEntry> STREAM_ROW_MAPPER = (rs, rowNum) -> {
+        EventStoreEntry entry = new EventStoreEntry();
+        entry.setGlobalPosition(rs.getLong("global_position"));
+        entry.setCreatedAt(rs.getTimestamp("created_at").toLocalDateTime());
+        entry.setEventType(rs.getString("event_type"));
+        entry.setEventData(rs.getString("event_data"));
+        entry.setEventPayload(rs.getBytes("event_payload"));
+        entry.setCodec(rs.getString("codec"));
+        entry.setSchemaVersion(rs.getInt("schema_version"));
+        return entry;
+    };
+
+    @Value("${app.event-sourcing.stream.batch-size:500}")
+    private int streamBatchSize;
 
     @Override
     public void saveEvents(String aggregateId, List<DomainEvent> events, Long expectedVersion) {
-        Long currentVersion = eventStoreRepository.countByAggregateId(aggregateId);
-
-        if (!currentVersion.equals(expectedVersion)) {
-            throw new ConcurrentModificationException(
-                String.format("Expected version %d but was %d for aggregate %s",
-                    expectedVersion, currentVersion, aggregateId));
+        if (events.isEmpty()) {
+            return;
         }
 
+        String createdBy = auditorProvider.getCurrentAuditor().orElse("system");
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        EventCodec codec = eventCodecRegistry.getWriteCodec();
+        List<Object[]> rows = new ArrayList<>(events.size());
+
         for (int i = 0; i < events.size(); i++) {
             DomainEvent event = events.get(i);
             event.setVersion(expectedVersion + i + 1);
 
-            try {
-                String eventData = objectMapper.writeValueAsString(event);
-                EventStoreEntry entry = new EventStoreEntry();
-                entry.setEventId(event.getEventId());
-                entry.setEventType(event.getEventType());
-                entry.setAggregateId(event.getAggregateId());
-                entry.setAggregateType(event.getAggregateType());
-                entry.setVersion(event.getVersion());
-                entry.setEventData(eventData);
-                entry.setEntityVersion(0L);
-                // BaseEntity audit fields will be set automatically by JPA auditing
-                eventStoreRepository.save(entry);
-            } catch (Exception e) {
-                throw new RuntimeException("Failed to serialize event", e);
+            EventStoreEntry entry = new EventStoreEntry();
+            codec.encode(event, entry);
+            rows.add(new Object[] {
+                event.getEventId(),
+                event.getEventType(),
+                event.getAggregateId(),
+                event.getAggregateType(),
+                event.getVersion(),
+                entry.getEventData(),
+                entry.getEventPayload(),
+                codec.getName(),
+                eventUpcasterChain.getCurrentVersion(event.getEventType()),
+                createdAt,
+                createdBy
+            });
+        }
+
+        // The unique (aggregate_id, version) constraint rejects the batch if another
+        // writer appended to this aggregate after expectedVersion was read
+        try {
+            jdbcTemplate.batchUpdate(INSERT_EVENT_SQL, rows);
+        } catch (DuplicateKeyException e) {
+            // A duplicate event_id is a replayed event, not a lost race on the version
+            String message = e.getMostSpecificCause().getMessage();
+            if (message == null || !message.contains(AGGREGATE_VERSION_CONSTRAINT)) {
+                throw e;
             }
+            throw new ConcurrentModificationException(
+                String.format("Expected version %d is stale for aggregate %s",
+                    expectedVersion, aggregateId));
         }
+
+        applicationEventPublisher.publishEvent(new EventsAppendedEvent(aggregateId, events.size(),
+            events.stream().map(DomainEvent::getEventType).collect(Collectors.toSet())));
     }
 
     @Override
     public List<DomainEvent> getEventsForAggregate(String aggregateId) {
-        return eventStoreRepository.findByAggregateIdOrderByVersionAsc(aggregateId)
-            .stream()
+        List<EventStoreEntry> entries = withArchived(aggregateId, 0L,
+            eventStoreRepository.findByAggregateIdOrderByVersionAsc(aggregateId), "");
+
+        return entries.stream()
             .map(this::deserializeEvent)
             .collect(Collectors.toList());
     }
 
     @Override
     public List<DomainEvent> getEventsForAggregateFromVersion(String aggregateId, Long version) {
-        return eventStoreRepository.findByAggregateIdAndVersionGreaterThanOrderByVersionAsc(aggregateId, version)
+        return withArchived(aggregateId, version,
+                eventStoreRepository.findByAggregateIdAndVersionGreaterThanOrderByVersionAsc(aggregateId, version), "")
             .stream()
             .map(this::deserializeEvent)
             .collect(Collectors.toList());
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, Long untilVersion) {
+        List<EventStoreEntry> entries = withArchived(aggregateId, fromVersion, eventStoreRepository
+            .findByAggregateIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(
+                aggregateId, fromVersion, untilVersion),
+            "AND version <= ? ", untilVersion);
+
+        return entries.stream()
+            .map(this::deserializeEvent)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, LocalDateTime until) {
+        List<EventStoreEntry> entries = withArchived(aggregateId, fromVersion, eventStoreRepository
+            .findByAggregateIdAndVersionGreaterThanAndCreatedAtLessThanEqualOrderByVersionAsc(
+                aggregateId, fromVersion, until),
+            "AND created_at <= ? ", Timestamp.valueOf(until));
+
+        return entries.stream()
+            .map(this::deserializeEvent)
+            .collect(Collectors.toList());
+    }
+
+    // Prepends the archived events after fromVersion that come before the first event found in
+    // event_store. When event_store continues right after fromVersion the archive is not read.
+    private List<EventStoreEntry> withArchived(String aggregateId, Long fromVersion, List<EventStoreEntry> entries,
+                                               String condition, Object... conditionArgs) {
+        if (!entries.isEmpty() && entries.get(0).getVersion() == fromVersion + 1) {
+            return entries;
+        }
+
+        long beforeVersion = entries.isEmpty() ? Long.MAX_VALUE : entries.get(0).getVersion();
+        Object[] args = new Object[3 + conditionArgs.length];
+        args[0] = aggregateId;
+        args[1] = fromVersion;
+        args[2] = beforeVersion;
+        System.arraycopy(conditionArgs, 0, args, 3, conditionArgs.length);
+
+        List<EventStoreEntry> archived = jdbcTemplate.query(
+            ARCHIVED_EVENTS_SQL + condition + "ORDER BY version ASC", STREAM_ROW_MAPPER, args);
+        if (archived.isEmpty()) {
+            return entries;
+        }
+
+        List<EventStoreEntry> merged = new ArrayList<>(archived.size() + entries.size());
+        merged.addAll(archived);
+        merged.addAll(entries);
+        return merged;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Map<String, List<DomainEvent>> getEventsForAggregatesFromVersions(Map<String, Long> afterVersions) {
+        if (afterVersions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String[] aggregateIds = afterVersions.keySet().toArray(new String[0]);
+        Long[] versions = afterVersions.values().toArray(new Long[0]);
+
+        List<EventStoreEntry> entries = jdbcTemplate.query(MULTI_AGGREGATE_SQL,
+            ps -> {
+                ps.setArray(1, ps.getConnection().createArrayOf("varchar", aggregateIds));
+                ps.setArray(2, ps.getConnection().createArrayOf("bigint", versions));
+            },
+            (rs, rowNum) -> {
+                EventStoreEntry entry = STREAM_ROW_MAPPER.mapRow(rs, rowNum);
+                entry.setAggregateId(rs.getString("aggregate_id"));
+                return entry;
+            });
+
+        Map<String, List<EventStoreEntry>> entriesByAggregate = entries.stream()
+            .collect(Collectors.groupingBy(EventStoreEntry::getAggregateId, LinkedHashMap::new, Collectors.toList()));
+
+        // Decoding dominates for large batches, aggregates are independent so decode them in parallel
+        return entriesByAggregate.entrySet().parallelStream()
+            .collect(Collectors.toConcurrentMap(
+                Map.Entry::getKey,
+                group -> group.getValue().stream().map(this::deserializeEvent).collect(Collectors.toList())));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long getCurrentVersion(String aggregateId) {
+        Long version = eventStoreRepository.findCurrentVersion(aggregateId);
+        if (version == 0L) {
+            version = jdbcTemplate.queryForObject(ARCHIVED_VERSION_SQL, Long.class, aggregateId);
+        }
+        return version;
+    }
+
     @Override
     public List<DomainEvent> getAllEvents() {
         return eventStoreRepository.findAllByOrderByCreatedAtAsc()
@@ -83,29 +298,106 @@ public class EventStoreImpl implements EventStore {
             .collect(Collectors.toList());
     }
 
-    private DomainEvent deserializeEvent(EventStoreEntry entry) {
-        try {
-            Class<?> eventClass = Class.forName(getEventClassName(entry.getEventType()));
-            return (DomainEvent) objectMapper.readValue(entry.getEventData(), eventClass);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to deserialize event", e);
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Stream<DomainEvent> streamAllEvents() {
+        return streamEvents(lastPosition ->
+            jdbcTemplate.query(STREAM_ALL_SQL, STREAM_ROW_MAPPER, lastPosition, streamBatchSize));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Stream<DomainEvent> streamEventsByType(String eventType) {
+        return streamEvents(lastPosition ->
+            jdbcTemplate.query(STREAM_BY_TYPE_SQL, STREAM_ROW_MAPPER, eventType, lastPosition, streamBatchSize));
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<StoredEvent> readAllEventsFrom(long afterPosition, int maxCount) {
+        return jdbcTemplate.query(STREAM_ALL_SQL, STREAM_ROW_MAPPER, afterPosition, maxCount)
+            .stream()
+            .map(entry -> new StoredEvent(entry.getGlobalPosition(), entry.getCreatedAt(), deserializeEvent(entry)))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<StoredEvent> readEventsAtPositions(Collection<Long> positions) {
+        if (positions.isEmpty()) {
+            return Collections.emptyList();
         }
+        Long[] requested = positions.toArray(new Long[0]);
+        return jdbcTemplate.query(READ_AT_POSITIONS_SQL,
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("bigint", requested)), STREAM_ROW_MAPPER)
+            .stream()
+            .map(entry -> new StoredEvent(entry.getGlobalPosition(), entry.getCreatedAt(), deserializeEvent(entry)))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public List<StoredEvent> readAllEventsIncludingArchivedFrom(long afterPosition, int maxCount) {
+        return jdbcTemplate.query(STREAM_ALL_INCLUDING_ARCHIVED_SQL, STREAM_ROW_MAPPER,
+                afterPosition, afterPosition, maxCount)
+            .stream()
+            .map(entry -> new StoredEvent(entry.getGlobalPosition(), entry.getCreatedAt(), deserializeEvent(entry)))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Long getHeadPosition() {
+        return eventStoreRepository.findHeadPosition();
+    }
+
+    private Stream<DomainEvent> streamEvents(PageLoader pageLoader) {
+        // Pages are fetched lazily by keyset on the global position and deserialized one at a time,
+        // so only a single page is ever held in memory regardless of the store size
+        KeysetIterator iterator = new KeysetIterator(pageLoader);
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .map(this::deserializeEvent);
+    }
+
+    private DomainEvent deserializeEvent(EventStoreEntry entry) {
+        return eventCodecRegistry.decode(entry);
+    }
+
+    @FunctionalInterface
+    private interface PageLoader {
+        List<EventStoreEntry> loadAfter(long lastPosition);
     }
 
-    private String getEventClassName(String eventType) {
-        // Map event types to their full class names
-        // This should be configurable or use a registry
-        switch (eventType) {
-            case "OrderCreatedEvent":
-                return "com.ecommerce.order.event.OrderCreatedEvent";
-            case "OrderConfirmedEvent":
-                return "com.ecommerce.order.event.OrderConfirmedEvent";
-            case "PaymentProcessedEvent":
-                return "com.ecommerce.payment.event.PaymentProcessedEvent";
-            case "StockReservedEvent":
-                return "com.ecommerce.product.event.StockReservedEvent";
-            default:
-                throw new IllegalArgumentException("Unknown event type: " + eventType);
+    private static class KeysetIterator implements Iterator<EventStoreEntry> {
+
+        private final PageLoader pageLoader;
+        private Iterator<EventStoreEntry> page = Collections.emptyIterator();
+        private long lastPosition = 0L;
+        private boolean exhausted = false;
+
+        KeysetIterator(PageLoader pageLoader) {
+            this.pageLoader = pageLoader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!page.hasNext() && !exhausted) {
+                List<EventStoreEntry> entries = pageLoader.loadAfter(lastPosition);
+                exhausted = entries.isEmpty();
+                page = entries.iterator();
+            }
+            return page.hasNext();
+        }
+
+        @Override
+        public EventStoreEntry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            EventStoreEntry entry = page.next();
+            lastPosition = entry.getGlobalPosition();
+            return entry;
         }
     }
 
@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -14,10 +15,22 @@ public interface EventStoreRepository extends JpaRepository<EventStoreEntry, Lon
 
     List<EventStoreEntry> findByAggregateIdAndVersionGreaterThanOrderByVersionAsc(String aggregateId, Long version);
 
+    List<EventStoreEntry> findByAggregateIdAndVersionGreaterThanAndVersionLessThanEqualOrderByVersionAsc(
+        String aggregateId, Long fromVersion, Long untilVersion);
+
+    List<EventStoreEntry> findByAggregateIdAndVersionGreaterThanAndCreatedAtLessThanEqualOrderByVersionAsc(
+        String aggregateId, Long fromVersion, LocalDateTime until);
+
     @Query("SELECT e FROM EventStoreEntry e WHERE e.eventType = :eventType ORDER BY e.createdAt ASC")
     List<EventStoreEntry> findByEventTypeOrderByCreatedAtAsc(@Param("eventType") String eventType);
 
     List<EventStoreEntry> findAllByOrderByCreatedAtAsc();
 
     Long countByAggregateId(String aggregateId);
+
+    @Query("SELECT COALESCE(MAX(e.version), 0) FROM EventStoreEntry e WHERE e.aggregateId = :aggregateId")
+    Long findCurrentVersion(@Param("aggregateId") String aggregateId);
+
+    @Query("SELECT COALESCE(MAX(e.globalPosition), 0) FROM EventStoreEntry e")
+    Long findHeadPosition();
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.ecommerce.common.event;
+
+import java.util.List;
+import java.util.Set;
+
+public interface EventSubscriber {
+
+    String getSubscriberId();
+
+    // During a rebuild events are handed over one at a time, concurrently for different aggregates
+    void handle(List<StoredEvent> events);
+
+    // Event types the subscriber handles, null for all. A rebuild does not replay the others.
+    default Set<String> getHandledEventTypes() {
+        return null;
+    }
+
+    // Clears whatever the subscriber built from earlier events, called before a rebuild feeds it
+    // the store again from the beginning
+    default void reset() {
+    }
+}
@@ -0,0 +1,364 @@
+package com.ecommerce.common.event;
+
+import com.ecommerce.common.util.IdGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Polls the store for each subscriber and delivers new events in order. A subscription is delivered
+// by one instance at a time, the one holding the lease on its checkpoint row. Others skip it until
+// that lease has run out, and a checkpoint only moves while its writer still owns it.
+@Component
+@Slf4j
+public class EventSubscriptionManager implements SmartLifecycle {
+
+    // Checkpoint of a subscriber whose rebuild started but did not finish
+    private static final long REBUILD_PENDING = -1L;
+
+    @Autowired
+    private EventStore eventStore;
+
+    @Autowired
+    private EventReplayer eventReplayer;
+
+    @Autowired
+    private SubscriptionCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired(required = false)
+    private List<EventSubscriber> subscribers = new ArrayList<>();
+
+    @Value("${app.event-sourcing.subscriptions.poll-interval-ms:500}")
+    private long pollIntervalMs;
+
+    @Value("${app.event-sourcing.subscriptions.batch-size:200}")
+    private int batchSize;
+
+    @Value("${app.event-sourcing.subscriptions.gap-timeout-ms:5000}")
+    private long gapTimeoutMs;
+
+    @Value("${app.event-sourcing.subscriptions.gap-rescan-ms:600000}")
+    private long gapRescanMs;
+
+    @Value("${app.event-sourcing.subscriptions.max-skipped-positions:10000}")
+    private int maxSkippedPositions;
+
+    @Value("${app.event-sourcing.subscriptions.threads:2}")
+    private int threads;
+
+    @Value("${app.event-sourcing.subscriptions.lease-ms:30000}")
+    private long leaseMs;
+
+    private final String instanceId = IdGenerator.newId();
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService scheduler;
+
+    // Leases are renewed on their own thread, so a long rebuild or batch does not let them expire
+    private ScheduledExecutorService leaseScheduler;
+
+    private volatile boolean running = false;
+
+    @Override
+    public synchronized void start() {
+        scheduler = Executors.newScheduledThreadPool(threads);
+        leaseScheduler = Executors.newSingleThreadScheduledExecutor();
+        leaseScheduler.scheduleWithFixedDelay(this::renewLeases, leaseMs / 3, leaseMs / 3, TimeUnit.MILLISECONDS);
+        subscribers.forEach(this::schedule);
+        running = true;
+    }
+
+    // Registers a subscriber that is not a bean, e.g. an adapter built by another component
+    public synchronized void subscribe(EventSubscriber subscriber) {
+        if (scheduler == null) {
+            subscribers.add(subscriber);
+        } else {
+            schedule(subscriber);
+        }
+    }
+
+    // Resets the subscriber, replays the whole store into it, archive included, and moves its
+    // checkpoint to the head it replayed up to. Positions the replay found empty are rescanned like
+    // skipped gaps, so an event committed into one of them after the replay read past it is still
+    // delivered. The subscription lock is held throughout so no batch is delivered while the rebuild runs.
+    // The checkpoint is marked as pending first: if the rebuild fails or the service stops midway,
+    // the rebuild is started over on the next poll instead of resuming over a half-built state.
+    public void rebuildSubscription(String subscriberId) {
+        Subscription subscription = subscriptions.stream()
+            .filter(candidate -> candidate.subscriber.getSubscriberId().equals(subscriberId))
+            .findFirst()
+            .orElseThrow(() -> new IllegalArgumentException("Unknown event subscriber: " + subscriberId));
+
+        subscription.lock.lock();
+        try {
+            if (!claim(subscription)) {
+                throw new IllegalStateException("Event subscription " + subscriberId + " is owned by another instance");
+            }
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                saveCheckpoint(subscription, REBUILD_PENDING));
+            subscription.position = REBUILD_PENDING;
+            rebuild(subscription);
+        } finally {
+            subscription.lock.unlock();
+        }
+
+        if (running) {
+            scheduler.execute(() -> poll(subscription));
+        }
+    }
+
+    private void schedule(EventSubscriber subscriber) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            checkpointRepository.createIfAbsent(subscriber.getSubscriberId()));
+        Subscription subscription = new Subscription(subscriber, loadCheckpoint(subscriber.getSubscriberId()));
+        subscriptions.add(subscription);
+        scheduler.scheduleWithFixedDelay(() -> poll(subscription), 0, pollIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("Started event subscription {} from position {}", subscriber.getSubscriberId(), subscription.position);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            leaseScheduler.shutdown();
+            releaseLeases();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Wake subscribers as soon as events committed by this instance become visible
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsAppended(EventsAppendedEvent event) {
+        if (!running || scheduler == null) {
+            return;
+        }
+        subscriptions.forEach(subscription -> scheduler.execute(() -> poll(subscription)));
+    }
+
+    private void poll(Subscription subscription) {
+        if (!subscription.lock.tryLock()) {
+            return; // A poll for this subscriber is already in progress
+        }
+
+        try {
+            if (!claim(subscription)) {
+                return; // Delivered by another instance
+            }
+            if (subscription.position == REBUILD_PENDING) {
+                restartRebuild(subscription);
+            }
+            deliverSkipped(subscription);
+
+            int delivered;
+            do {
+                delivered = deliverNextBatch(subscription);
+            } while (running && delivered == batchSize);
+        } catch (Exception e) {
+            log.error("Event subscription {} failed at position {}, will retry",
+                subscription.subscriber.getSubscriberId(), subscription.position, e);
+        } finally {
+            subscription.lock.unlock();
+        }
+    }
+
+    private int deliverNextBatch(Subscription subscription) {
+        List<StoredEvent> batch = eventStore.readAllEventsFrom(subscription.position, batchSize);
+        List<StoredEvent> deliverable = new ArrayList<>(batch.size());
+
+        long expected = subscription.position + 1;
+        for (StoredEvent storedEvent : batch) {
+            // A hole in the sequence is either a rolled back append or a transaction that has not
+            // committed yet. Wait for it to fill in until the events behind it are old enough,
+            // then move on and keep checking the skipped positions for a late commit.
+            if (storedEvent.getGlobalPosition() != expected) {
+                if (isRecent(storedEvent.getStoredAt())) {
+                    break;
+                }
+                skip(subscription, expected, storedEvent);
+            }
+            deliverable.add(storedEvent);
+            expected = storedEvent.getGlobalPosition() + 1;
+        }
+
+        if (deliverable.isEmpty()) {
+            return 0;
+        }
+
+        // Handle the batch and move the checkpoint in one transaction. A subscriber writing to the
+        // same database sees every event once, provided this instance still owns the subscription:
+        // if it lost the lease meanwhile the checkpoint does not move and the batch is rolled back.
+        long lastPosition = deliverable.get(deliverable.size() - 1).getGlobalPosition();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            subscription.subscriber.handle(deliverable);
+            saveCheckpoint(subscription, lastPosition);
+        });
+        subscription.position = lastPosition;
+        return deliverable.size();
+    }
+
+    private void restartRebuild(Subscription subscription) {
+        log.warn("Event subscription {} has an unfinished rebuild, starting it over",
+            subscription.subscriber.getSubscriberId());
+        rebuild(subscription);
+    }
+
+    private void rebuild(Subscription subscription) {
+        EventSubscriber subscriber = subscription.subscriber;
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> subscriber.reset());
+
+        // The parallel replay brings the subscriber up to the head, the subscription continues from there
+        ReplayProgress progress = eventReplayer.replay(subscriber.getSubscriberId(), subscriber.getHandledEventTypes(),
+            storedEvent -> subscriber.handle(List.of(storedEvent)));
+
+        long position = progress.getHeadPosition();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+            saveCheckpoint(subscription, position));
+        subscription.position = position;
+        subscription.skippedPositions.clear();
+        LocalDateTime skippedAt = LocalDateTime.now();
+        progress.getUnfilledPositions().forEach(unfilled ->
+            subscription.skippedPositions.put(unfilled, skippedAt));
+    }
+
+    private void skip(Subscription subscription, long fromPosition, StoredEvent next) {
+        // A transaction that allocated a position this far back is not going to commit anymore
+        if (Duration.between(next.getStoredAt(), LocalDateTime.now()).toMillis() >= gapRescanMs) {
+            return;
+        }
+
+        LocalDateTime skippedAt = LocalDateTime.now();
+        for (long position = fromPosition; position < next.getGlobalPosition(); position++) {
+            if (subscription.skippedPositions.size() >= maxSkippedPositions) {
+                log.warn("Event subscription {} skipped too many positions, not rescanning from {}",
+                    subscription.subscriber.getSubscriberId(), position);
+                return;
+            }
+            subscription.skippedPositions.put(position, skippedAt);
+        }
+    }
+
+    // Delivers events that committed at a position the subscription had already skipped. They
+    // arrive out of order, the checkpoint is already past them. The unchanged checkpoint is written
+    // along with them so they are rolled back if this instance no longer owns the subscription.
+    private void deliverSkipped(Subscription subscription) {
+        if (subscription.skippedPositions.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime givenUpBefore = LocalDateTime.now().minus(Duration.ofMillis(gapRescanMs));
+        subscription.skippedPositions.values().removeIf(skippedAt -> skippedAt.isBefore(givenUpBefore));
+
+        List<StoredEvent> late = eventStore.readEventsAtPositions(subscription.skippedPositions.keySet());
+        if (late.isEmpty()) {
+            return;
+        }
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            subscription.subscriber.handle(late);
+            saveCheckpoint(subscription, subscription.position);
+        });
+        late.forEach(storedEvent -> subscription.skippedPositions.remove(storedEvent.getGlobalPosition()));
+        log.info("Event subscription {} delivered {} late events", subscription.subscriber.getSubscriberId(), late.size());
+    }
+
+    private boolean isRecent(LocalDateTime storedAt) {
+        return Duration.between(storedAt, LocalDateTime.now()).toMillis() < gapTimeoutMs;
+    }
+
+    private long loadCheckpoint(String subscriberId) {
+        return checkpointRepository.findBySubscriberId(subscriberId)
+            .map(SubscriptionCheckpoint::getPosition)
+            .orElse(0L);
+    }
+
+    // Takes or extends the subscription's lease. An instance that just became the owner continues
+    // from the stored checkpoint, the previous owner may have moved it.
+    private boolean claim(Subscription subscription) {
+        String subscriberId = subscription.subscriber.getSubscriberId();
+        Integer claimed = new TransactionTemplate(transactionManager).execute(status ->
+            checkpointRepository.claim(subscriberId, instanceId, leaseMs));
+        if (claimed == null || claimed == 0) {
+            if (subscription.owned) {
+                log.info("Event subscription {} was taken over by another instance", subscriberId);
+                subscription.owned = false;
+            }
+            return false;
+        }
+
+        if (!subscription.owned) {
+            subscription.position = loadCheckpoint(subscriberId);
+            subscription.skippedPositions.clear();
+            subscription.owned = true;
+            log.info("Event subscription {} owned by this instance from position {}", subscriberId, subscription.position);
+        }
+        return true;
+    }
+
+    private void renewLeases() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                checkpointRepository.renewLeases(instanceId, leaseMs));
+        } catch (Exception e) {
+            log.error("Failed to renew event subscription leases, will retry", e);
+        }
+    }
+
+    // Lets other instances take the subscriptions over without waiting for the leases
+    private void releaseLeases() {
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                checkpointRepository.releaseLeases(instanceId));
+        } catch (Exception e) {
+            log.warn("Failed to release event subscription leases, they are taken over once they expire", e);
+        }
+    }
+
+    private void saveCheckpoint(Subscription subscription, long position) {
+        String subscriberId = subscription.subscriber.getSubscriberId();
+        if (checkpointRepository.updatePosition(subscriberId, instanceId, position) == 0) {
+            subscription.owned = false;
+            throw new IllegalStateException("Event subscription " + subscriberId + " is owned by another instance");
+        }
+    }
+
+    private static class Subscription {
+
+        private final EventSubscriber subscriber;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile long position;
+        // Whether this instance held the lease at the last claim, only touched under the lock
+        private boolean owned;
+        // Positions passed over while still empty, by when, only touched under the lock
+        private final Map<Long, LocalDateTime> skippedPositions = new TreeMap<>();
+
+        Subscription(EventSubscriber subscriber, long position) {
+            this.subscriber = subscriber;
+            this.position = position;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+@Slf4j
+public class EventTypeRegistry {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.event-sourcing.event-packages:com.ecommerce}")
+    private String[] eventPackages;
+
+    private final Map<String, Class<? extends DomainEvent>> eventClasses = new ConcurrentHashMap<>();
+
+    private final Map<String, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void scanEventTypes() {
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false);
+        scanner.addIncludeFilter(new AssignableTypeFilter(DomainEvent.class));
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        for (String basePackage : eventPackages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                register(ClassUtils.resolveClassName(candidate.getBeanClassName(), classLoader).asSubclass(DomainEvent.class));
+            }
+        }
+
+        log.info("Registered {} event types: {}", readers.size(), readers.keySet());
+    }
+
+    public void register(Class<? extends DomainEvent> eventClass) {
+        // Event types are stored by simple class name, see DomainEvent
+        String eventType = eventClass.getSimpleName();
+        Class<? extends DomainEvent> existing = eventClasses.putIfAbsent(eventType, eventClass);
+
+        if (existing != null && !existing.equals(eventClass)) {
+            throw new IllegalStateException(String.format(
+                "Event type %s is declared by both %s and %s",
+                eventType, existing.getName(), eventClass.getName()));
+        }
+
+        readers.computeIfAbsent(eventType, type -> objectMapper.readerFor(eventClass));
+    }
+
+    public Class<? extends DomainEvent> getEventClass(String eventType) {
+        Class<? extends DomainEvent> eventClass = eventClasses.get(eventType);
+        if (eventClass == null) {
+            throw new IllegalArgumentException("Unknown event type: " + eventType);
+        }
+        return eventClass;
+    }
+
+    public ObjectReader getReader(String eventType) {
+        ObjectReader reader = readers.get(eventType);
+        if (reader == null) {
+            throw new IllegalArgumentException("Unknown event type: " + eventType);
+        }
+        return reader;
+    }
+}
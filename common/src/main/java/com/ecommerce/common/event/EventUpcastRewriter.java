@@ -0,0 +1,143 @@
+package com.ecommerce.common.event;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Background job that persists upcasted payloads, so old rows stop paying the upcast on every read.
+// Rows are rewritten in small batches re-encoded with the current write codec, the unchanged
+// event id, version and global position keep readers and subscriptions unaffected.
+@Component
+@ConditionalOnProperty(name = "app.event-sourcing.store", havingValue = "jdbc", matchIfMissing = true)
+@Slf4j
+public class EventUpcastRewriter implements SmartLifecycle {
+
+    private static final String SELECT_OUTDATED_SQL =
+        "SELECT id, event_type, event_data, event_payload, codec, schema_version FROM event_store " +
+        "WHERE event_type = ? AND schema_version < ? ORDER BY id ASC LIMIT ? FOR UPDATE SKIP LOCKED";
+
+    private static final String UPDATE_EVENT_SQL =
+        "UPDATE event_store SET event_data = ?, event_payload = ?, codec = ?, schema_version = ? " +
+        "WHERE id = ? AND schema_version = ?";
+
+    @Autowired
+    private EventUpcasterChain eventUpcasterChain;
+
+    @Autowired
+    private EventCodecRegistry eventCodecRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.event-sourcing.upcasting.rewrite.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.event-sourcing.upcasting.rewrite.interval-ms:60000}")
+    private long intervalMs;
+
+    @Value("${app.event-sourcing.upcasting.rewrite.batch-size:500}")
+    private int batchSize;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running = false;
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::rewriteAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void rewriteAll() {
+        for (String eventType : eventUpcasterChain.getUpcastedEventTypes()) {
+            try {
+                long rewritten = 0;
+                int batch;
+                do {
+                    batch = rewriteBatch(eventType);
+                    rewritten += batch;
+                } while (running && batch == batchSize);
+
+                if (rewritten > 0) {
+                    log.info("Rewrote {} {} events to schema version {}",
+                        rewritten, eventType, eventUpcasterChain.getCurrentVersion(eventType));
+                }
+            } catch (Exception e) {
+                log.error("Rewriting upcasted {} events failed, will retry", eventType, e);
+            }
+        }
+    }
+
+    private int rewriteBatch(String eventType) {
+        int currentVersion = eventUpcasterChain.getCurrentVersion(eventType);
+        EventCodec writeCodec = eventCodecRegistry.getWriteCodec();
+
+        Integer rewritten = new TransactionTemplate(transactionManager).execute(status -> {
+            List<EventStoreEntry> outdated = jdbcTemplate.query(SELECT_OUTDATED_SQL, (rs, rowNum) -> {
+                EventStoreEntry entry = new EventStoreEntry();
+                entry.setId(rs.getLong("id"));
+                entry.setEventType(rs.getString("event_type"));
+                entry.setEventData(rs.getString("event_data"));
+                entry.setEventPayload(rs.getBytes("event_payload"));
+                entry.setCodec(rs.getString("codec"));
+                entry.setSchemaVersion(rs.getInt("schema_version"));
+                return entry;
+            }, eventType, currentVersion, batchSize);
+
+            List<Object[]> updates = new ArrayList<>(outdated.size());
+            for (EventStoreEntry entry : outdated) {
+                EventStoreEntry target = new EventStoreEntry();
+                writeCodec.encode(eventCodecRegistry.decode(entry), target);
+                updates.add(new Object[] {
+                    target.getEventData(),
+                    target.getEventPayload(),
+                    writeCodec.getName(),
+                    currentVersion,
+                    entry.getId(),
+                    entry.getSchemaVersion()
+                });
+            }
+
+            if (!updates.isEmpty()) {
+                jdbcTemplate.batchUpdate(UPDATE_EVENT_SQL, updates);
+            }
+            return outdated.size();
+        });
+
+        return rewritten == null ? 0 : rewritten;
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+// Migrates the stored payload of one event type from getFromVersion() to getFromVersion() + 1.
+// Upcasters of a type must form a gap free chain starting at schema version 1, the newest
+// version reached by the chain is the one new events of that type are written with.
+public interface EventUpcaster {
+
+    String getEventType();
+
+    int getFromVersion();
+
+    ObjectNode upcast(ObjectNode payload);
+}
@@ -0,0 +1,82 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Component
+@Slf4j
+public class EventUpcasterChain {
+
+    public static final int INITIAL_SCHEMA_VERSION = 1;
+
+    @Autowired(required = false)
+    private List<EventUpcaster> upcasters = new ArrayList<>();
+
+    // Upcasters per event type, indexed by the schema version they upcast from minus one
+    private final Map<String, List<EventUpcaster>> chains = new HashMap<>();
+
+    @PostConstruct
+    public void buildChains() {
+        Map<String, List<EventUpcaster>> byType = upcasters.stream()
+            .collect(Collectors.groupingBy(EventUpcaster::getEventType));
+
+        byType.forEach((eventType, typeUpcasters) -> {
+            typeUpcasters.sort(Comparator.comparingInt(EventUpcaster::getFromVersion));
+            for (int i = 0; i < typeUpcasters.size(); i++) {
+                if (typeUpcasters.get(i).getFromVersion() != INITIAL_SCHEMA_VERSION + i) {
+                    throw new IllegalStateException(String.format(
+                        "Upcasters of event type %s must cover schema versions %d to %d without gaps or duplicates",
+                        eventType, INITIAL_SCHEMA_VERSION, typeUpcasters.size()));
+                }
+            }
+            chains.put(eventType, typeUpcasters);
+        });
+
+        if (!chains.isEmpty()) {
+            log.info("Registered event upcasters, current schema versions: {}", chains.keySet().stream()
+                .collect(Collectors.toMap(eventType -> eventType, this::getCurrentVersion)));
+        }
+    }
+
+    public int getCurrentVersion(String eventType) {
+        List<EventUpcaster> chain = chains.get(eventType);
+        return chain == null ? INITIAL_SCHEMA_VERSION : INITIAL_SCHEMA_VERSION + chain.size();
+    }
+
+    public boolean requiresUpcast(String eventType, Integer schemaVersion) {
+        return normalize(schemaVersion) < getCurrentVersion(eventType);
+    }
+
+    public Set<String> getUpcastedEventTypes() {
+        return chains.keySet();
+    }
+
+    public JsonNode upcast(String eventType, Integer schemaVersion, JsonNode payload) {
+        if (!payload.isObject()) {
+            throw new IllegalArgumentException("Cannot upcast non object payload of event type " + eventType);
+        }
+
+        List<EventUpcaster> chain = chains.get(eventType);
+        ObjectNode upcasted = (ObjectNode) payload;
+        for (int version = normalize(schemaVersion); version < getCurrentVersion(eventType); version++) {
+            upcasted = chain.get(version - INITIAL_SCHEMA_VERSION).upcast(upcasted);
+        }
+        return upcasted;
+    }
+
+    private int normalize(Integer schemaVersion) {
+        return schemaVersion == null ? INITIAL_SCHEMA_VERSION : schemaVersion;
+    }
+}
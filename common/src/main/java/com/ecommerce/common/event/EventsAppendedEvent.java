@@ -0,0 +1,15 @@
+package com.ecommerce.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Set;
+
+@Data
+@AllArgsConstructor
+public class EventsAppendedEvent {
+
+    private String aggregateId;
+    private int eventCount;
+    private Set<String> eventTypes;
+}
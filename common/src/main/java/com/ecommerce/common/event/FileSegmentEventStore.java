@@ -0,0 +1,614 @@
+package com.ecommerce.common.event;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+// Event store backed by append-only, memory-mapped segment files instead of the event_store table.
+// Records are written sequentially and indexed in memory by global position and by aggregate, the
+// indexes are rebuilt by scanning the segments on startup. Appends are serialized by a single write
+// lock and made durable with group commit: concurrent appenders share one fsync of the segment.
+// Readers only see events once they are durable, the flush that covers a batch publishes it.
+// The files are not part of the database transaction, so select it with
+// app.event-sourcing.store=file only where that trade-off is acceptable.
+@Service
+@ConditionalOnProperty(name = "app.event-sourcing.store", havingValue = "file")
+@Slf4j
+public class FileSegmentEventStore implements EventStore {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Record: length, crc32c of the body, body. A zero length marks the end of the written data.
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final byte TEXT_PAYLOAD = 0;
+    private static final byte BINARY_PAYLOAD = 1;
+
+    @Autowired
+    private EventCodecRegistry eventCodecRegistry;
+
+    @Autowired
+    private EventUpcasterChain eventUpcasterChain;
+
+    @Autowired
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Value("${app.event-sourcing.file.directory:data/event-store}")
+    private String directory;
+
+    @Value("${app.event-sourcing.file.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    @Value("${app.event-sourcing.file.fsync:true}")
+    private boolean fsync;
+
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    // Record pointers, the pointer of global position p is at index p - 1
+    private final PointerList positionIndex = new PointerList();
+
+    private final Map<String, PointerList> aggregateIndex = new ConcurrentHashMap<>();
+
+    // Version of each aggregate including appends not yet durable, for the concurrency check.
+    // Only touched under the write lock.
+    private final Map<String, Long> appendedVersions = new ConcurrentHashMap<>();
+
+    // Appended batches waiting for the flush that makes them durable, in sequence order
+    private final ConcurrentLinkedQueue<PendingBatch> unpublished = new ConcurrentLinkedQueue<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private volatile Segment activeSegment;
+
+    private long appendedSequence = 0L;
+
+    // Global position of the next record, only touched under the write lock
+    private long nextPosition = 1L;
+
+    private volatile long durableSequence = 0L;
+
+    @PostConstruct
+    public void open() throws IOException {
+        Path path = Paths.get(directory);
+        Files.createDirectories(path);
+
+        List<Path> segmentFiles;
+        try (Stream<Path> files = Files.list(path)) {
+            segmentFiles = files
+                .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+
+        for (int i = 0; i < segmentFiles.size(); i++) {
+            Segment segment = Segment.open(segmentFiles.get(i), segments.size(), getSegmentSize());
+            segments.add(segment);
+            recover(segment, i == segmentFiles.size() - 1);
+        }
+
+        if (segments.isEmpty()) {
+            roll(1L);
+        } else {
+            activeSegment = segments.get(segments.size() - 1);
+        }
+
+        log.info("Opened file event store in {} with {} segments, {} events and {} aggregates",
+            path.toAbsolutePath(), segments.size(), positionIndex.size(), aggregateIndex.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        writeLock.lock();
+        try {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void saveEvents(String aggregateId, List<DomainEvent> events, Long expectedVersion) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // Encode outside the lock, only the position and checksum are filled in while holding it
+        EventCodec codec = eventCodecRegistry.getWriteCodec();
+        long createdAt = System.currentTimeMillis();
+        List<ByteBuffer> records = new ArrayList<>(events.size());
+        for (int i = 0; i < events.size(); i++) {
+            DomainEvent event = events.get(i);
+            event.setVersion(expectedVersion + i + 1);
+            records.add(encodeRecord(event, codec, createdAt));
+        }
+
+        long sequence;
+        writeLock.lock();
+        try {
+            long currentVersion = appendedVersions.getOrDefault(aggregateId, 0L);
+            if (currentVersion != expectedVersion) {
+                throw new EventStoreImpl.ConcurrentModificationException(
+                    String.format("Expected version %d is stale for aggregate %s",
+                        expectedVersion, aggregateId));
+            }
+
+            long[] pointers = new long[records.size()];
+            Segment startSegment = activeSegment;
+            int startOffset = startSegment.writeOffset;
+            try {
+                for (int i = 0; i < records.size(); i++) {
+                    pointers[i] = append(records.get(i), nextPosition + i);
+                }
+            } catch (IOException e) {
+                // Only rolling to a new segment can fail, so the partial batch is all in the start
+                // segment. Nothing of it is indexed yet, erase it so recovery never sees it.
+                startSegment.buffer.duplicate().position(startOffset)
+                    .put(new byte[startSegment.writeOffset - startOffset]);
+                startSegment.writeOffset = startOffset;
+                throw e;
+            }
+
+            nextPosition += pointers.length;
+            appendedVersions.put(aggregateId, expectedVersion + pointers.length);
+            sequence = ++appendedSequence;
+
+            // Readers see the batch once it is durable, or right away when durability is not asked for
+            PendingBatch batch = new PendingBatch(sequence, aggregateId, pointers);
+            if (fsync) {
+                unpublished.add(batch);
+            } else {
+                publish(batch);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append events for aggregate " + aggregateId, e);
+        } finally {
+            writeLock.unlock();
+        }
+
+        if (fsync) {
+            awaitDurable(sequence);
+        }
+
+        applicationEventPublisher.publishEvent(new EventsAppendedEvent(aggregateId, events.size(),
+            events.stream().map(DomainEvent::getEventType).collect(Collectors.toSet())));
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForAggregate(String aggregateId) {
+        return getEventsForAggregateFromVersion(aggregateId, 0L);
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForAggregateFromVersion(String aggregateId, Long version) {
+        PointerList pointers = aggregateIndex.get(aggregateId);
+        if (pointers == null) {
+            return Collections.emptyList();
+        }
+
+        int size = pointers.size();
+        List<DomainEvent> events = new ArrayList<>(Math.max(0, size - version.intValue()));
+        for (int i = version.intValue(); i < size; i++) {
+            events.add(eventCodecRegistry.decode(readEntry(pointers.get(i))));
+        }
+        return events;
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, Long untilVersion) {
+        PointerList pointers = aggregateIndex.get(aggregateId);
+        if (pointers == null) {
+            return Collections.emptyList();
+        }
+
+        int last = (int) Math.min(pointers.size(), untilVersion);
+        List<DomainEvent> events = new ArrayList<>(Math.max(0, last - fromVersion.intValue()));
+        for (int i = fromVersion.intValue(); i < last; i++) {
+            events.add(eventCodecRegistry.decode(readEntry(pointers.get(i))));
+        }
+        return events;
+    }
+
+    @Override
+    public List<DomainEvent> getEventsForAggregateUntil(String aggregateId, Long fromVersion, LocalDateTime until) {
+        PointerList pointers = aggregateIndex.get(aggregateId);
+        if (pointers == null) {
+            return Collections.emptyList();
+        }
+
+        // Events of an aggregate are appended in time order, stop at the first one after the cut off
+        List<DomainEvent> events = new ArrayList<>();
+        for (int i = fromVersion.intValue(); i < pointers.size(); i++) {
+            EventStoreEntry entry = readEntry(pointers.get(i));
+            if (entry.getCreatedAt().isAfter(until)) {
+                break;
+            }
+            events.add(eventCodecRegistry.decode(entry));
+        }
+        return events;
+    }
+
+    @Override
+    public Map<String, List<DomainEvent>> getEventsForAggregatesFromVersions(Map<String, Long> afterVersions) {
+        Map<String, List<DomainEvent>> eventsById = new LinkedHashMap<>();
+        afterVersions.forEach((aggregateId, version) -> {
+            List<DomainEvent> events = getEventsForAggregateFromVersion(aggregateId, version);
+            if (!events.isEmpty()) {
+                eventsById.put(aggregateId, events);
+            }
+        });
+        return eventsById;
+    }
+
+    @Override
+    public Long getCurrentVersion(String aggregateId) {
+        PointerList pointers = aggregateIndex.get(aggregateId);
+        return pointers == null ? 0L : pointers.size();
+    }
+
+    @Override
+    public List<DomainEvent> getAllEvents() {
+        try (Stream<DomainEvent> events = streamAllEvents()) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public List<DomainEvent> getEventsByType(String eventType) {
+        try (Stream<DomainEvent> events = streamEventsByType(eventType)) {
+            return events.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public Stream<DomainEvent> streamAllEvents() {
+        return streamEntries().map(eventCodecRegistry::decode);
+    }
+
+    @Override
+    public Stream<DomainEvent> streamEventsByType(String eventType) {
+        // The type is read from the record header, only matching events are decoded
+        return streamEntries()
+            .filter(entry -> entry.getEventType().equals(eventType))
+            .map(eventCodecRegistry::decode);
+    }
+
+    @Override
+    public List<StoredEvent> readAllEventsFrom(long afterPosition, int maxCount) {
+        long lastPosition = Math.min(positionIndex.size(), afterPosition + maxCount);
+        List<StoredEvent> events = new ArrayList<>((int) Math.max(0, lastPosition - afterPosition));
+        for (long position = afterPosition + 1; position <= lastPosition; position++) {
+            EventStoreEntry entry = readEntry(positionIndex.get((int) (position - 1)));
+            events.add(new StoredEvent(position, entry.getCreatedAt(), eventCodecRegistry.decode(entry)));
+        }
+        return events;
+    }
+
+    @Override
+    public List<StoredEvent> readEventsAtPositions(Collection<Long> positions) {
+        // Positions are assigned under the write lock, so there are never gaps to fill in later
+        List<StoredEvent> events = new ArrayList<>(positions.size());
+        positions.stream().sorted().filter(position -> position >= 1 && position <= positionIndex.size())
+            .forEach(position -> {
+                EventStoreEntry entry = readEntry(positionIndex.get((int) (position - 1)));
+                events.add(new StoredEvent(position, entry.getCreatedAt(), eventCodecRegistry.decode(entry)));
+            });
+        return events;
+    }
+
+    @Override
+    public List<StoredEvent> readAllEventsIncludingArchivedFrom(long afterPosition, int maxCount) {
+        // Segments are never archived
+        return readAllEventsFrom(afterPosition, maxCount);
+    }
+
+    @Override
+    public Long getHeadPosition() {
+        return (long) positionIndex.size();
+    }
+
+    private Stream<EventStoreEntry> streamEntries() {
+        // Positions are dense, so the stream walks the segments sequentially up to the current head
+        return LongStream.range(0, positionIndex.size())
+            .mapToObj(index -> readEntry(positionIndex.get((int) index)));
+    }
+
+    private ByteBuffer encodeRecord(DomainEvent event, EventCodec codec, long createdAt) {
+        EventStoreEntry entry = new EventStoreEntry();
+        codec.encode(event, entry);
+
+        byte payloadKind = entry.getEventData() != null ? TEXT_PAYLOAD : BINARY_PAYLOAD;
+        byte[] payload = payloadKind == TEXT_PAYLOAD
+            ? entry.getEventData().getBytes(StandardCharsets.UTF_8)
+            : entry.getEventPayload();
+        byte[] eventType = event.getEventType().getBytes(StandardCharsets.UTF_8);
+        byte[] aggregateId = event.getAggregateId().getBytes(StandardCharsets.UTF_8);
+        byte[] codecName = codec.getName().getBytes(StandardCharsets.UTF_8);
+
+        int bodySize = Long.BYTES * 3 + Integer.BYTES + 1
+            + Short.BYTES + eventType.length
+            + Short.BYTES + aggregateId.length
+            + Short.BYTES + codecName.length
+            + Integer.BYTES + payload.length;
+
+        if (RECORD_HEADER_SIZE + bodySize + Integer.BYTES > getSegmentSize()) {
+            throw new IllegalArgumentException(String.format(
+                "Event %s of %d bytes does not fit in a segment", event.getEventId(), bodySize));
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + bodySize);
+        record.putInt(bodySize);
+        record.putInt(0); // Checksum, computed once the position is known
+        record.putLong(0L); // Global position, assigned under the write lock
+        record.putLong(createdAt);
+        record.putLong(event.getVersion());
+        record.putInt(eventUpcasterChain.getCurrentVersion(event.getEventType()));
+        record.put(payloadKind);
+        record.putShort((short) eventType.length).put(eventType);
+        record.putShort((short) aggregateId.length).put(aggregateId);
+        record.putShort((short) codecName.length).put(codecName);
+        record.putInt(payload.length).put(payload);
+        return record;
+    }
+
+    private long append(ByteBuffer record, long globalPosition) throws IOException {
+        record.putLong(RECORD_HEADER_SIZE, globalPosition);
+        CRC32C crc = new CRC32C();
+        crc.update(record.array(), RECORD_HEADER_SIZE, record.capacity() - RECORD_HEADER_SIZE);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+
+        // Keep room for the zero length that terminates the segment
+        if (activeSegment.writeOffset + record.capacity() + Integer.BYTES > activeSegment.buffer.capacity()) {
+            roll(globalPosition);
+        }
+
+        Segment segment = activeSegment;
+        int offset = segment.writeOffset;
+        segment.buffer.duplicate().position(offset).put(record.array());
+        segment.writeOffset = offset + record.capacity();
+        return pointer(segment.index, offset);
+    }
+
+    private void roll(long firstPosition) throws IOException {
+        if (activeSegment != null) {
+            // The new segment is the only one group commit forces, so seal the old one first
+            activeSegment.buffer.force();
+        }
+
+        // Named by the first position it holds, so the names sort in append order
+        String name = String.format("%s%020d%s", SEGMENT_PREFIX, firstPosition, SEGMENT_SUFFIX);
+        Segment segment = Segment.open(Paths.get(directory, name), segments.size(), getSegmentSize());
+        segments.add(segment);
+        activeSegment = segment;
+    }
+
+    private void awaitDurable(long sequence) {
+        // Group commit: whoever gets the flush lock forces everything appended so far and publishes
+        // it to readers, appenders queued behind it usually find their sequence already durable and
+        // return without a sync
+        flushLock.lock();
+        try {
+            if (durableSequence >= sequence) {
+                return;
+            }
+
+            long target;
+            Segment segment;
+            writeLock.lock();
+            try {
+                target = appendedSequence;
+                segment = activeSegment;
+            } finally {
+                writeLock.unlock();
+            }
+
+            segment.buffer.force();
+
+            // In sequence order, so positions become visible without gaps
+            PendingBatch batch;
+            while ((batch = unpublished.peek()) != null && batch.sequence <= target) {
+                unpublished.poll();
+                publish(batch);
+            }
+            durableSequence = target;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void publish(PendingBatch batch) {
+        PointerList index = aggregateIndex.computeIfAbsent(batch.aggregateId, id -> new PointerList());
+        for (long pointer : batch.pointers) {
+            positionIndex.add(pointer);
+            index.add(pointer);
+        }
+    }
+
+    private void recover(Segment segment, boolean last) {
+        ByteBuffer view = segment.buffer.duplicate();
+        int offset = 0;
+
+        while (offset + RECORD_HEADER_SIZE <= view.capacity()) {
+            int bodySize = view.getInt(offset);
+            if (bodySize == 0) {
+                break;
+            }
+
+            boolean intact = bodySize > 0 && offset + RECORD_HEADER_SIZE + bodySize <= view.capacity();
+            if (intact) {
+                CRC32C crc = new CRC32C();
+                crc.update(view.duplicate().position(offset + RECORD_HEADER_SIZE).limit(offset + RECORD_HEADER_SIZE + bodySize));
+                intact = (int) crc.getValue() == view.getInt(offset + Integer.BYTES);
+            }
+
+            if (!intact) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupt event record in " + segment.path + " at offset " + offset);
+                }
+                // A torn write from a crash, everything from here on was never acknowledged
+                log.warn("Truncating torn event record in {} at offset {}", segment.path, offset);
+                view.duplicate().position(offset).put(new byte[view.capacity() - offset]);
+                break;
+            }
+
+            long pointer = pointer(segment.index, offset);
+            EventStoreEntry entry = readEntry(segment, offset);
+            if (entry.getGlobalPosition() != positionIndex.size() + 1) {
+                throw new IllegalStateException("Unexpected global position " + entry.getGlobalPosition() +
+                    " in " + segment.path + " at offset " + offset);
+            }
+            positionIndex.add(pointer);
+            aggregateIndex.computeIfAbsent(entry.getAggregateId(), id -> new PointerList()).add(pointer);
+            appendedVersions.merge(entry.getAggregateId(), 1L, Long::sum);
+            nextPosition = entry.getGlobalPosition() + 1;
+
+            offset += RECORD_HEADER_SIZE + bodySize;
+        }
+
+        segment.writeOffset = offset;
+    }
+
+    private EventStoreEntry readEntry(long pointer) {
+        return readEntry(segments.get((int) (pointer >>> 32)), (int) pointer);
+    }
+
+    private EventStoreEntry readEntry(Segment segment, int offset) {
+        ByteBuffer view = segment.buffer.duplicate();
+        view.position(offset + RECORD_HEADER_SIZE);
+
+        EventStoreEntry entry = new EventStoreEntry();
+        entry.setGlobalPosition(view.getLong());
+        entry.setCreatedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(view.getLong()), ZoneId.systemDefault()));
+        entry.setVersion(view.getLong());
+        entry.setSchemaVersion(view.getInt());
+        byte payloadKind = view.get();
+        entry.setEventType(readString(view));
+        entry.setAggregateId(readString(view));
+        entry.setCodec(readString(view));
+
+        byte[] payload = new byte[view.getInt()];
+        view.get(payload);
+        if (payloadKind == TEXT_PAYLOAD) {
+            entry.setEventData(new String(payload, StandardCharsets.UTF_8));
+        } else {
+            entry.setEventPayload(payload);
+        }
+        return entry;
+    }
+
+    private static String readString(ByteBuffer view) {
+        byte[] bytes = new byte[view.getShort()];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long pointer(int segmentIndex, int offset) {
+        return ((long) segmentIndex << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private int getSegmentSize() {
+        return segmentSizeMb * 1024 * 1024;
+    }
+
+    private static class Segment {
+
+        private final Path path;
+        private final int index;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int writeOffset;
+
+        private Segment(Path path, int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(Path path, int index, int segmentSize) throws IOException {
+            FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = Math.max(channel.size(), segmentSize);
+            return new Segment(path, index, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+    }
+
+    private static class PendingBatch {
+
+        private final long sequence;
+        private final String aggregateId;
+        private final long[] pointers;
+
+        PendingBatch(long sequence, String aggregateId, long[] pointers) {
+            this.sequence = sequence;
+            this.aggregateId = aggregateId;
+            this.pointers = pointers;
+        }
+    }
+
+    // Append-only list of record pointers. Written by one thread at a time, the flush that publishes
+    // or the appender under the write lock when fsync is off; readers see every element below the
+    // published size because size is written after the element and the array.
+    private static class PointerList {
+
+        private volatile long[] pointers = new long[16];
+        private volatile int size = 0;
+
+        void add(long pointer) {
+            long[] current = pointers;
+            if (size == current.length) {
+                current = Arrays.copyOf(current, current.length * 2);
+                pointers = current;
+            }
+            current[size] = pointer;
+            size = size + 1;
+        }
+
+        long get(int index) {
+            return pointers[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class JsonEventCodec implements EventCodec {
+
+    public static final String NAME = "json";
+
+    private final ObjectMapper objectMapper;
+    private final EventTypeRegistry eventTypeRegistry;
+
+    public JsonEventCodec(ObjectMapper objectMapper, EventTypeRegistry eventTypeRegistry) {
+        this.objectMapper = objectMapper;
+        this.eventTypeRegistry = eventTypeRegistry;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(DomainEvent event, EventStoreEntry target) {
+        try {
+            target.setEventData(objectMapper.writeValueAsString(event));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize event", e);
+        }
+    }
+
+    @Override
+    public DomainEvent decode(EventStoreEntry source) {
+        try {
+            return eventTypeRegistry.getReader(source.getEventType()).readValue(source.getEventData());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+
+    @Override
+    public JsonNode decodeTree(EventStoreEntry source) {
+        try {
+            return objectMapper.readTree(source.getEventData());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+
+    @Override
+    public DomainEvent bind(String eventType, JsonNode tree) {
+        try {
+            return eventTypeRegistry.getReader(eventType).readValue(tree);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize event", e);
+        }
+    }
+}
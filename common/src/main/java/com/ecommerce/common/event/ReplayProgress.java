@@ -0,0 +1,56 @@
+package com.ecommerce.common.event;
+
+import lombok.Getter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Getter
+public class ReplayProgress {
+
+    private final String name;
+    private final long headPosition;
+    private final int partitions;
+    private final LocalDateTime startedAt = LocalDateTime.now();
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong eventsReplayed = new AtomicLong();
+    // Empty positions below the head that a transaction still in flight may yet fill in
+    private final List<Long> unfilledPositions = new ArrayList<>();
+    private volatile LocalDateTime finishedAt;
+    private volatile String failure;
+
+    public ReplayProgress(String name, long headPosition, int partitions) {
+        this.name = name;
+        this.headPosition = headPosition;
+        this.partitions = partitions;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    public double getPercentComplete() {
+        return headPosition == 0 ? 100.0 : readPosition.get() * 100.0 / headPosition;
+    }
+
+    public double getEventsPerSecond() {
+        LocalDateTime end = finishedAt != null ? finishedAt : LocalDateTime.now();
+        long millis = Math.max(1, Duration.between(startedAt, end).toMillis());
+        return eventsReplayed.get() * 1000.0 / millis;
+    }
+
+    void finish(String failure) {
+        this.failure = failure;
+        this.finishedAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d events replayed, %.1f%% read, %.0f events/s%s",
+            name, eventsReplayed.get(), getPercentComplete(), getEventsPerSecond(),
+            failure != null ? ", failed: " + failure : "");
+    }
+}
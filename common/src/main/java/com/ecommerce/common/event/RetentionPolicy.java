@@ -0,0 +1,13 @@
+package com.ecommerce.common.event;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Tells the EventArchiver which aggregates of a type are finished and can leave the hot event store
+public interface RetentionPolicy {
+
+    AggregateRepository<?> getAggregateRepository();
+
+    // Aggregates that reached a terminal state before the cut off and still have events in event_store
+    List<String> findArchivableAggregateIds(LocalDateTime terminalBefore, int limit);
+}
@@ -0,0 +1,29 @@
+package com.ecommerce.common.event;
+
+import com.ecommerce.common.entity.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "aggregate_snapshots")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SnapshotEntry extends BaseEntity {
+
+    @Column(name = "aggregate_id", nullable = false)
+    private String aggregateId;
+
+    @Column(name = "aggregate_type", nullable = false)
+    private String aggregateType;
+
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    @Column(name = "snapshot_data", columnDefinition = "TEXT", nullable = false)
+    private String snapshotData;
+}
@@ -0,0 +1,27 @@
+package com.ecommerce.common.event;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SnapshotRepository extends JpaRepository<SnapshotEntry, Long> {
+
+    Optional<SnapshotEntry> findFirstByAggregateIdOrderByVersionDesc(String aggregateId);
+
+    Optional<SnapshotEntry> findFirstByAggregateIdAndVersionLessThanEqualOrderByVersionDesc(
+        String aggregateId, Long version);
+
+    Optional<SnapshotEntry> findFirstByAggregateIdAndCreatedAtLessThanEqualOrderByVersionDesc(
+        String aggregateId, LocalDateTime createdAt);
+
+    @Query("SELECT s FROM SnapshotEntry s WHERE s.aggregateId IN :aggregateIds AND s.version = " +
+           "(SELECT MAX(latest.version) FROM SnapshotEntry latest WHERE latest.aggregateId = s.aggregateId)")
+    List<SnapshotEntry> findLatestByAggregateIdIn(@Param("aggregateIds") Collection<String> aggregateIds);
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.common.event;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+public interface SnapshotStore {
+
+    void saveSnapshot(AggregateRoot aggregate, String aggregateType);
+
+    SnapshotEntry capture(AggregateRoot aggregate, String aggregateType);
+
+    void saveSnapshot(SnapshotEntry entry);
+
+    <T extends AggregateRoot> Optional<T> getLatestSnapshot(String aggregateId, Class<T> aggregateClass);
+
+    <T extends AggregateRoot> Optional<T> getLatestSnapshotUntil(String aggregateId, Long version, Class<T> aggregateClass);
+
+    <T extends AggregateRoot> Optional<T> getLatestSnapshotUntil(String aggregateId, LocalDateTime until, Class<T> aggregateClass);
+
+    <T extends AggregateRoot> Map<String, T> getLatestSnapshots(Collection<String> aggregateIds, Class<T> aggregateClass);
+}
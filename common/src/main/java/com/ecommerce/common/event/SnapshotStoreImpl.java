@@ -0,0 +1,110 @@
+package com.ecommerce.common.event;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+@Service
+@Transactional
+@Slf4j
+public class SnapshotStoreImpl implements SnapshotStore {
+
+    @Autowired
+    private SnapshotRepository snapshotRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveSnapshot(AggregateRoot aggregate, String aggregateType) {
+        snapshotRepository.save(capture(aggregate, aggregateType));
+    }
+
+    // Serializes the aggregate right away, so later changes to it do not leak into the snapshot
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public SnapshotEntry capture(AggregateRoot aggregate, String aggregateType) {
+        try {
+            SnapshotEntry entry = new SnapshotEntry();
+            entry.setAggregateId(aggregate.getId());
+            entry.setAggregateType(aggregateType);
+            entry.setVersion(aggregate.getVersion());
+            entry.setSnapshotData(objectMapper.writeValueAsString(aggregate));
+            return entry;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize snapshot", e);
+        }
+    }
+
+    @Override
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void saveSnapshot(SnapshotEntry entry) {
+        snapshotRepository.save(entry);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T extends AggregateRoot> Optional<T> getLatestSnapshot(String aggregateId, Class<T> aggregateClass) {
+        return snapshotRepository.findFirstByAggregateIdOrderByVersionDesc(aggregateId)
+            .map(entry -> deserializeSnapshot(entry, aggregateClass));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T extends AggregateRoot> Optional<T> getLatestSnapshotUntil(String aggregateId, Long version,
+                                                                         Class<T> aggregateClass) {
+        return snapshotRepository.findFirstByAggregateIdAndVersionLessThanEqualOrderByVersionDesc(aggregateId, version)
+            .map(entry -> deserializeSnapshot(entry, aggregateClass));
+    }
+
+    // Snapshots are written after their events commit, so one created by the cut off only holds
+    // events that existed at that time
+    @Override
+    @Transactional(readOnly = true)
+    public <T extends AggregateRoot> Optional<T> getLatestSnapshotUntil(String aggregateId, LocalDateTime until,
+                                                                         Class<T> aggregateClass) {
+        return snapshotRepository.findFirstByAggregateIdAndCreatedAtLessThanEqualOrderByVersionDesc(aggregateId, until)
+            .map(entry -> deserializeSnapshot(entry, aggregateClass));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <T extends AggregateRoot> Map<String, T> getLatestSnapshots(Collection<String> aggregateIds,
+                                                                        Class<T> aggregateClass) {
+        Map<String, T> snapshots = new HashMap<>();
+        if (aggregateIds.isEmpty()) {
+            return snapshots;
+        }
+
+        for (SnapshotEntry entry : snapshotRepository.findLatestByAggregateIdIn(aggregateIds)) {
+            try {
+                snapshots.put(entry.getAggregateId(), deserializeSnapshot(entry, aggregateClass));
+            } catch (Exception e) {
+                // Leave it out, the aggregate is replayed from its full history instead
+                log.warn("Ignoring unreadable snapshot for aggregate {}", entry.getAggregateId(), e);
+            }
+        }
+        return snapshots;
+    }
+
+    private <T extends AggregateRoot> T deserializeSnapshot(SnapshotEntry entry, Class<T> aggregateClass) {
+        try {
+            T aggregate = objectMapper.readValue(entry.getSnapshotData(), aggregateClass);
+            aggregate.setId(entry.getAggregateId());
+            aggregate.setVersion(entry.getVersion());
+            return aggregate;
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.common.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class StoredEvent {
+
+    private long globalPosition;
+    private LocalDateTime storedAt;
+    private DomainEvent event;
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.common.event;
+
+import com.ecommerce.common.entity.BaseEntity;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "event_subscription_checkpoints")
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubscriptionCheckpoint extends BaseEntity {
+
+    @Column(name = "subscriber_id", unique = true, nullable = false)
+    private String subscriberId;
+
+    @Column(name = "position", nullable = false)
+    private Long position;
+}
@@ -0,0 +1,46 @@
+package com.ecommerce.common.event;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface SubscriptionCheckpointRepository extends JpaRepository<SubscriptionCheckpoint, Long> {
+
+    Optional<SubscriptionCheckpoint> findBySubscriberId(String subscriberId);
+
+    @Modifying
+    @Query(value = "INSERT INTO event_subscription_checkpoints (subscriber_id, position) VALUES (:subscriberId, 0) " +
+        "ON CONFLICT (subscriber_id) DO NOTHING", nativeQuery = true)
+    int createIfAbsent(@Param("subscriberId") String subscriberId);
+
+    // Takes or extends the lease of the subscription, 0 while another instance holds it
+    @Modifying
+    @Query(value = "UPDATE event_subscription_checkpoints " +
+        "SET owner_id = :ownerId, lease_until = CURRENT_TIMESTAMP + :leaseMs * INTERVAL '1 millisecond' " +
+        "WHERE subscriber_id = :subscriberId " +
+        "AND (owner_id IS NULL OR owner_id = :ownerId OR lease_until < CURRENT_TIMESTAMP)", nativeQuery = true)
+    int claim(@Param("subscriberId") String subscriberId, @Param("ownerId") String ownerId, @Param("leaseMs") long leaseMs);
+
+    @Modifying
+    @Query(value = "UPDATE event_subscription_checkpoints " +
+        "SET lease_until = CURRENT_TIMESTAMP + :leaseMs * INTERVAL '1 millisecond' WHERE owner_id = :ownerId",
+        nativeQuery = true)
+    int renewLeases(@Param("ownerId") String ownerId, @Param("leaseMs") long leaseMs);
+
+    @Modifying
+    @Query(value = "UPDATE event_subscription_checkpoints SET owner_id = NULL, lease_until = NULL WHERE owner_id = :ownerId",
+        nativeQuery = true)
+    int releaseLeases(@Param("ownerId") String ownerId);
+
+    // Moves the checkpoint only while the given instance owns the subscription, 0 otherwise
+    @Modifying
+    @Query(value = "UPDATE event_subscription_checkpoints SET position = :position, updated_at = CURRENT_TIMESTAMP " +
+        "WHERE subscriber_id = :subscriberId AND owner_id = :ownerId", nativeQuery = true)
+    int updatePosition(@Param("subscriberId") String subscriberId, @Param("ownerId") String ownerId,
+                       @Param("position") long position);
+}
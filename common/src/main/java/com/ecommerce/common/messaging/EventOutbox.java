@@ -0,0 +1,113 @@
+package com.ecommerce.common.messaging;
+
+import com.ecommerce.common.event.DomainEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+@Component
+public class EventOutbox {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private static final String INSERT_SQL =
+        "INSERT INTO event_outbox (event_id, event_type, aggregate_id, payload, attempts, created_at) VALUES (?, ?, ?, ?, 0, ?)";
+
+    // Claims due rows by moving their next attempt past the claim timeout, in one short statement,
+    // so nothing stays locked while the relay waits for the broker. A relay that dies mid-publish
+    // leaves its rows to be claimed again once the timeout has passed. SKIP LOCKED lets several
+    // relays claim at once without handing out a row twice. A row waits while an earlier row of
+    // its aggregate is still pending, claimed or backing off, so an aggregate's events go out in order.
+    private static final String CLAIM_BATCH_SQL =
+        "UPDATE event_outbox SET next_attempt_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' " +
+        "WHERE id IN (SELECT o.id FROM event_outbox o " +
+        "WHERE o.status = 'PENDING' AND o.next_attempt_at <= CURRENT_TIMESTAMP " +
+        "AND NOT EXISTS (SELECT 1 FROM event_outbox earlier WHERE earlier.status = 'PENDING' " +
+        "AND earlier.aggregate_id = o.aggregate_id AND earlier.id < o.id) " +
+        "ORDER BY o.id ASC LIMIT ? FOR UPDATE SKIP LOCKED) " +
+        "RETURNING id, event_id, event_type, payload, attempts";
+
+    private static final String DELETE_SQL = "DELETE FROM event_outbox WHERE id = ?";
+
+    private static final String MARK_FAILED_SQL =
+        "UPDATE event_outbox SET attempts = attempts + 1, last_error = ?, " +
+        "next_attempt_at = CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond' WHERE id = ?";
+
+    private static final String MARK_PARKED_SQL =
+        "UPDATE event_outbox SET attempts = attempts + 1, last_error = ?, status = 'PARKED' WHERE id = ?";
+
+    private static final RowMapper<OutboxEntry> ROW_MAPPER = (rs, rowNum) -> new OutboxEntry(
+        rs.getLong("id"),
+        rs.getString("event_id"),
+        rs.getString("event_type"),
+        rs.getString("payload"),
+        rs.getInt("attempts")
+    );
+
+    // Must join the transaction that appends the events so both commit or neither does
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(List<DomainEvent> events) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(events.size());
+
+        for (DomainEvent event : events) {
+            try {
+                rows.add(new Object[] {
+                    event.getEventId(),
+                    event.getEventType(),
+                    event.getAggregateId(),
+                    objectMapper.writeValueAsString(event),
+                    createdAt
+                });
+            } catch (Exception e) {
+                throw new RuntimeException("Failed to serialize event", e);
+            }
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    // The claimed rows in outbox order
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<OutboxEntry> claimBatch(int batchSize, long claimTimeoutMs) {
+        List<OutboxEntry> claimed = new ArrayList<>(jdbcTemplate.query(CLAIM_BATCH_SQL, ROW_MAPPER, claimTimeoutMs, batchSize));
+        claimed.sort(Comparator.comparing(OutboxEntry::getId));
+        return claimed;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markPublished(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        ids.forEach(id -> rows.add(new Object[] {id}));
+        jdbcTemplate.batchUpdate(DELETE_SQL, rows);
+    }
+
+    // The row is retried once the backoff has passed
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markFailed(Long id, String error, long backoffMs) {
+        jdbcTemplate.update(MARK_FAILED_SQL, error, backoffMs, id);
+    }
+
+    // The row stays in the table for manual inspection but is never relayed again
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void markParked(Long id, String error) {
+        jdbcTemplate.update(MARK_PARKED_SQL, error, id);
+    }
+}
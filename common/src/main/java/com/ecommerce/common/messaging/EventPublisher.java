@@ -2,6 +2,7 @@ package com.ecommerce.common.messaging;
 
 import com.ecommerce.common.event.DomainEvent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.retry.annotation.Backoff;
@@ -10,6 +11,8 @@ import org.springframework.retry.annotation.Retryable;
 import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 @Service
 @Slf4j
 public class EventPublisher {
@@ -44,6 +47,20 @@ public class EventPublisher {
         }
     }
 
+    // Publishes without blocking on retries, the broker confirm completes the returned future
+    public CompletableFuture<CorrelationData.Confirm> publishEventWithConfirm(DomainEvent event) {
+        CorrelationData correlationData = new CorrelationData(event.getEventId());
+
+        rabbitTemplate.convertAndSend(
+            RabbitMQConfig.DOMAIN_EVENTS_EXCHANGE,
+            getRoutingKeyForEvent(event),
+            event,
+            correlationData
+        );
+
+        return correlationData.getFuture();
+    }
+
     @Recover
     public void recoverFromEventPublishFailure(Exception ex, DomainEvent event) {
         log.error("Failed to publish event after all retries: {}", event, ex);
@@ -0,0 +1,17 @@
+package com.ecommerce.common.messaging;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboxEntry {
+
+    private Long id;
+    private String eventId;
+    private String eventType;
+    private String payload;
+    private Integer attempts;
+}
@@ -0,0 +1,182 @@
+package com.ecommerce.common.messaging;
+
+import com.ecommerce.common.event.DomainEvent;
+import com.ecommerce.common.event.EventTypeRegistry;
+import com.ecommerce.common.event.EventsAppendedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+@Slf4j
+public class OutboxRelay implements SmartLifecycle {
+
+    @Autowired
+    private EventOutbox eventOutbox;
+
+    @Autowired
+    private EventPublisher eventPublisher;
+
+    @Autowired
+    private EventTypeRegistry eventTypeRegistry;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${app.messaging.outbox.poll-interval-ms:1000}")
+    private long pollIntervalMs;
+
+    @Value("${app.messaging.outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${app.messaging.outbox.confirm-timeout-ms:5000}")
+    private long confirmTimeoutMs;
+
+    @Value("${app.messaging.outbox.claim-timeout-ms:60000}")
+    private long claimTimeoutMs;
+
+    @Value("${app.messaging.outbox.backoff-initial-ms:1000}")
+    private long backoffInitialMs;
+
+    @Value("${app.messaging.outbox.backoff-max-ms:300000}")
+    private long backoffMaxMs;
+
+    @Value("${app.messaging.outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    private final ReentrantLock relayLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::relay, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    // Relay right after the appending transaction commits instead of waiting for the next poll
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEventsAppended(EventsAppendedEvent event) {
+        if (running) {
+            scheduler.execute(this::relay);
+        }
+    }
+
+    private void relay() {
+        if (!relayLock.tryLock()) {
+            return;
+        }
+
+        try {
+            // Keep draining while events get through. Failed rows back off and are not claimed again
+            // right away, so a failing broker waits for the next poll.
+            int relayed;
+            do {
+                relayed = relayBatch();
+            } while (running && relayed > 0);
+        } catch (Exception e) {
+            log.error("Outbox relay failed, will retry", e);
+        } finally {
+            relayLock.unlock();
+        }
+    }
+
+    // Claims a batch, publishes it and waits for the confirms outside any transaction, then records
+    // the outcome. No connection or row lock is held while the broker is slow.
+    private int relayBatch() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+
+        List<OutboxEntry> batch = transactionTemplate.execute(status -> eventOutbox.claimBatch(batchSize, claimTimeoutMs));
+        if (batch == null || batch.isEmpty()) {
+            return 0;
+        }
+
+        Map<OutboxEntry, CompletableFuture<CorrelationData.Confirm>> pending = new LinkedHashMap<>();
+        Map<OutboxEntry, String> failures = new LinkedHashMap<>();
+
+        // Publish the whole batch first, then wait for the confirms together
+        for (OutboxEntry entry : batch) {
+            try {
+                DomainEvent event = eventTypeRegistry.getReader(entry.getEventType()).readValue(entry.getPayload());
+                pending.put(entry, eventPublisher.publishEventWithConfirm(event));
+            } catch (Exception e) {
+                failures.put(entry, e.getMessage());
+            }
+        }
+
+        List<Long> published = new ArrayList<>(pending.size());
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(confirmTimeoutMs);
+
+        for (Map.Entry<OutboxEntry, CompletableFuture<CorrelationData.Confirm>> confirm : pending.entrySet()) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                CorrelationData.Confirm result = confirm.getValue().get(remaining, TimeUnit.NANOSECONDS);
+                if (result.isAck()) {
+                    published.add(confirm.getKey().getId());
+                } else {
+                    failures.put(confirm.getKey(), result.getReason());
+                }
+            } catch (InterruptedException e) {
+                // Unconfirmed rows are claimed again after the claim timeout
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                failures.put(confirm.getKey(), "No broker confirm: " + e);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            eventOutbox.markPublished(published);
+            failures.forEach(this::failed);
+        });
+        return published.size();
+    }
+
+    private void failed(OutboxEntry entry, String error) {
+        int attempt = entry.getAttempts() + 1;
+        if (attempt >= maxAttempts) {
+            log.error("Parking event {} ({}) after {} failed attempts: {}",
+                entry.getEventId(), entry.getEventType(), attempt, error);
+            eventOutbox.markParked(entry.getId(), error);
+            return;
+        }
+
+        // Exponential backoff, doubling per attempt up to the maximum
+        long backoffMs = Math.min(backoffMaxMs, backoffInitialMs << Math.min(attempt - 1, 30));
+        log.warn("Failed to relay event {} ({}) on attempt {}, retrying in {} ms: {}",
+            entry.getEventId(), entry.getEventType(), attempt, backoffMs, error);
+        eventOutbox.markFailed(entry.getId(), error, backoffMs);
+    }
+}
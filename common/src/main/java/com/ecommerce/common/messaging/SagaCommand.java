@@ -1,12 +1,12 @@
 package com.ecommerce.common.messaging;
 
+import com.ecommerce.common.util.IdGenerator;
 import com.fasterxml.jackson.annotation.JsonFormat;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
-import java.util.UUID;
 
 @Data
 @NoArgsConstructor
@@ -23,7 +23,7 @@ public class SagaCommand {
     private LocalDateTime createdAt;
 
     public SagaCommand(String commandType, String sagaId, String targetService, Object payload) {
-        this.commandId = UUID.randomUUID().toString();
+        this.commandId = IdGenerator.newId();
         this.commandType = commandType;
         this.sagaId = sagaId;
         this.targetService = targetService;
@@ -0,0 +1,382 @@
+package com.ecommerce.common.saga;
+
+import com.ecommerce.common.util.IdGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Keeps saga state in saga_state. Saves are coalesced per saga in memory and flushed in batches by
+// a background writer, so a saga step does not wait for the database. saveNow writes through.
+// Each active saga is owned by one instance on a lease the owner keeps renewing. Only the owner
+// writes a saga, and other instances take it over only once the lease has run out.
+@Component
+@Slf4j
+public class JdbcSagaRepository implements SagaRepository, SmartLifecycle {
+
+    private static final String ACTIVE_STATUSES = "('STARTED', 'IN_PROGRESS', 'COMPENSATING')";
+
+    private static final String LEASE_UNTIL = "CURRENT_TIMESTAMP + ? * INTERVAL '1 millisecond'";
+
+    // A saga owned by another instance is left as it is
+    private static final String UPSERT_SQL =
+        "INSERT INTO saga_state (saga_id, saga_type, status, state, created_at, updated_at, owner_id, lease_until) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, " + LEASE_UNTIL + ") " +
+        "ON CONFLICT (saga_id) DO UPDATE SET status = EXCLUDED.status, state = EXCLUDED.state, " +
+        "updated_at = EXCLUDED.updated_at, lease_until = EXCLUDED.lease_until " +
+        "WHERE saga_state.owner_id = EXCLUDED.owner_id";
+
+    private static final String SELECT_BY_ID_SQL =
+        "SELECT saga_type, state FROM saga_state WHERE saga_id = ?";
+
+    private static final String CLAIM_SQL =
+        "UPDATE saga_state SET owner_id = ?, lease_until = " + LEASE_UNTIL + " " +
+        "WHERE status IN " + ACTIVE_STATUSES + " AND (owner_id IS NULL OR lease_until < CURRENT_TIMESTAMP)";
+
+    private static final String CLAIM_ACTIVE_SQL = CLAIM_SQL + " RETURNING saga_type, state";
+
+    private static final String CLAIM_BY_ID_SQL = CLAIM_SQL + " AND saga_id = ? RETURNING saga_type, state";
+
+    private static final String RENEW_SQL =
+        "UPDATE saga_state SET lease_until = " + LEASE_UNTIL + " " +
+        "WHERE owner_id = ? AND status IN " + ACTIVE_STATUSES + " RETURNING saga_id";
+
+    private static final String INSERT_ASSOCIATION_SQL =
+        "INSERT INTO saga_association (association_key, association_value, saga_id) VALUES (?, ?, ?) " +
+        "ON CONFLICT DO NOTHING";
+
+    private static final String SELECT_BY_ASSOCIATION_SQL =
+        "SELECT a.saga_id FROM saga_association a JOIN saga_state s ON s.saga_id = a.saga_id " +
+        "WHERE a.association_key = ? AND a.association_value = ? AND s.status IN " + ACTIVE_STATUSES;
+
+    // Distinct keys by hopping from one key to the next along the primary key index, the table
+    // holds a row per saga and value but only a handful of keys
+    private static final String SELECT_ASSOCIATION_KEYS_SQL =
+        "WITH RECURSIVE association_keys AS (" +
+        "SELECT MIN(association_key) AS association_key FROM saga_association " +
+        "UNION ALL SELECT (SELECT MIN(association_key) FROM saga_association a " +
+        "WHERE a.association_key > k.association_key) FROM association_keys k WHERE k.association_key IS NOT NULL) " +
+        "SELECT association_key FROM association_keys WHERE association_key IS NOT NULL";
+
+    private static final String RELEASE_SQL =
+        "UPDATE saga_state SET owner_id = NULL, lease_until = NULL WHERE owner_id = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.saga.persistence.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${app.saga.persistence.batch-size:500}")
+    private int batchSize;
+
+    @Value("${app.saga.persistence.lease-ms:30000}")
+    private long leaseMs;
+
+    private final String instanceId = IdGenerator.newId();
+
+    // Active sagas this instance holds the lease of
+    private final Set<String> owned = ConcurrentHashMap.newKeySet();
+
+    private volatile Consumer<String> ownershipLostHandler = sagaId -> { };
+
+    // Latest unwritten state per saga, a newer save replaces the pending one
+    private final Map<String, SagaRow> pending = new ConcurrentHashMap<>();
+
+    // Serializes flushes and write-through saves, so an older state never overwrites a newer one
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running = false;
+
+    @Override
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::renewLeases, leaseMs / 3, leaseMs / 3, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush(); // Whatever is still pending goes out before shutdown
+        release();
+    }
+
+    // Stops after the message listeners that feed the sagas, so their last saves are flushed
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1000;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void onOwnershipLost(Consumer<String> handler) {
+        this.ownershipLostHandler = handler;
+    }
+
+    @Override
+    public void save(Saga saga) {
+        // Serialized now, so later changes to the saga do not leak into this state
+        pending.put(saga.getSagaId(), toRow(saga));
+        track(saga);
+        if (pending.size() >= batchSize && running) {
+            scheduler.execute(this::flush);
+        }
+    }
+
+    @Override
+    public void saveNow(Saga saga) {
+        SagaRow row = toRow(saga);
+        writeLock.lock();
+        try {
+            pending.remove(saga.getSagaId());
+            int updated;
+            try {
+                updated = jdbcTemplate.update(UPSERT_SQL, args(row));
+            } catch (RuntimeException e) {
+                pending.putIfAbsent(row.getSagaId(), row);
+                throw e;
+            }
+            if (updated == 0) {
+                lost(saga.getSagaId());
+                throw new IllegalStateException("Saga " + saga.getSagaId() + " is owned by another instance");
+            }
+            track(saga);
+            try {
+                writeAssociations(List.of(row));
+            } catch (RuntimeException e) {
+                // Written again with the next save of the saga
+                log.warn("Failed to write the associations of saga {}", saga.getSagaId(), e);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<Saga> findById(String sagaId) {
+        SagaRow row = pending.get(sagaId);
+        if (row != null) {
+            return Optional.of(fromRow(row.getSagaType(), row.getState()));
+        }
+        return jdbcTemplate.query(SELECT_BY_ID_SQL,
+                (rs, rowNum) -> fromRow(rs.getString("saga_type"), rs.getString("state")), sagaId)
+            .stream()
+            .findFirst();
+    }
+
+    @Override
+    public List<String> findActiveIdsByAssociation(SagaAssociation association) {
+        return jdbcTemplate.queryForList(SELECT_BY_ASSOCIATION_SQL, String.class,
+            association.getKey(), association.getValue());
+    }
+
+    @Override
+    public Set<String> findAssociationKeys() {
+        return Set.copyOf(jdbcTemplate.queryForList(SELECT_ASSOCIATION_KEYS_SQL, String.class));
+    }
+
+    @Override
+    public Optional<Saga> claim(String sagaId) {
+        Optional<Saga> saga = jdbcTemplate.query(CLAIM_BY_ID_SQL,
+                (rs, rowNum) -> fromRow(rs.getString("saga_type"), rs.getString("state")),
+                instanceId, leaseMs, sagaId)
+            .stream()
+            .findFirst();
+        saga.ifPresent(this::track);
+        return saga;
+    }
+
+    @Override
+    public List<Saga> claimActive() {
+        flush();
+        List<String[]> rows = jdbcTemplate.query(CLAIM_ACTIVE_SQL,
+            (rs, rowNum) -> new String[] {rs.getString("saga_type"), rs.getString("state")},
+            instanceId, leaseMs);
+        // Deserializing dominates recovery time with many sagas, spread it over the cores
+        List<Saga> sagas = rows.parallelStream()
+            .map(row -> fromRow(row[0], row[1]))
+            .toList();
+        sagas.forEach(this::track);
+        return sagas;
+    }
+
+    // Extends the lease of every saga this instance owns. One that is no longer ours was taken
+    // over after a lease ran out, it is dropped here so the new owner alone runs it.
+    private void renewLeases() {
+        try {
+            Set<String> expected = Set.copyOf(owned);
+            Set<String> renewed = Set.copyOf(jdbcTemplate.queryForList(RENEW_SQL, String.class, leaseMs, instanceId));
+            expected.stream()
+                .filter(sagaId -> !renewed.contains(sagaId))
+                .forEach(this::lost);
+        } catch (Exception e) {
+            log.error("Failed to renew saga leases, will retry", e);
+        }
+    }
+
+    // Hands the sagas still running here to the other instances without waiting for the leases
+    private void release() {
+        try {
+            jdbcTemplate.update(RELEASE_SQL, instanceId);
+            owned.clear();
+        } catch (Exception e) {
+            log.warn("Failed to release saga leases, they are taken over once they expire", e);
+        }
+    }
+
+    private void track(Saga saga) {
+        if (saga.getStatus() == SagaStatus.STARTED || saga.getStatus() == SagaStatus.IN_PROGRESS
+                || saga.getStatus() == SagaStatus.COMPENSATING) {
+            owned.add(saga.getSagaId());
+        } else {
+            owned.remove(saga.getSagaId());
+        }
+    }
+
+    private void lost(String sagaId) {
+        // A saga that reached its final state in the meantime is no longer tracked
+        if (owned.remove(sagaId)) {
+            pending.remove(sagaId);
+            log.warn("Saga {} was taken over by another instance", sagaId);
+            ownershipLostHandler.accept(sagaId);
+        }
+    }
+
+    private void flush() {
+        if (pending.isEmpty() || !writeLock.tryLock()) {
+            return; // Nothing to write, or a flush is already running
+        }
+
+        try {
+            while (!pending.isEmpty()) {
+                List<SagaRow> batch = new ArrayList<>(Math.min(pending.size(), batchSize));
+                for (String sagaId : pending.keySet()) {
+                    SagaRow row = pending.remove(sagaId);
+                    if (row != null) {
+                        batch.add(row);
+                    }
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                }
+                write(batch);
+            }
+        } catch (Exception e) {
+            log.error("Failed to flush saga state, will retry", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(List<SagaRow> rows) {
+        try {
+            // Rows of sagas taken over by another instance are not written, renewLeases drops them
+            jdbcTemplate.batchUpdate(UPSERT_SQL, rows.stream()
+                .map(this::args)
+                .toList());
+            writeAssociations(rows);
+        } catch (RuntimeException e) {
+            // Put the rows back unless a newer state was saved in the meantime
+            rows.forEach(row -> pending.putIfAbsent(row.getSagaId(), row));
+            throw e;
+        }
+    }
+
+    // Associations only ever get added, existing ones are left as they are
+    private void writeAssociations(List<SagaRow> rows) {
+        List<Object[]> args = rows.stream()
+            .flatMap(row -> row.getAssociations().stream()
+                .map(association -> new Object[] {association.getKey(), association.getValue(), row.getSagaId()}))
+            .toList();
+        if (!args.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_ASSOCIATION_SQL, args);
+        }
+    }
+
+    private Object[] args(SagaRow row) {
+        return new Object[] {
+            row.getSagaId(),
+            row.getSagaType(),
+            row.getStatus(),
+            row.getState(),
+            row.getCreatedAt(),
+            row.getUpdatedAt(),
+            instanceId,
+            leaseMs
+        };
+    }
+
+    private SagaRow toRow(Saga saga) {
+        try {
+            return new SagaRow(
+                saga.getSagaId(),
+                saga.getClass().getName(),
+                saga.getStatus().name(),
+                objectMapper.writeValueAsString(saga),
+                Timestamp.valueOf(saga.getCreatedAt()),
+                Timestamp.valueOf(saga.getUpdatedAt()),
+                Set.copyOf(saga.getAssociations())
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize saga " + saga.getSagaId(), e);
+        }
+    }
+
+    private Saga fromRow(String sagaType, String state) {
+        try {
+            Class<? extends Saga> sagaClass = Class.forName(sagaType).asSubclass(Saga.class);
+            return objectMapper.readValue(state, sagaClass);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize saga of type " + sagaType, e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class SagaRow {
+        private final String sagaId;
+        private final String sagaType;
+        private final String status;
+        private final String state;
+        private final Timestamp createdAt;
+        private final Timestamp updatedAt;
+        private final Set<SagaAssociation> associations;
+    }
+}
@@ -2,12 +2,20 @@ package com.ecommerce.common.saga;
 
 import com.ecommerce.common.event.DomainEvent;
 import com.ecommerce.common.messaging.SagaCommand;
+import com.ecommerce.common.util.IdGenerator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Data
 public abstract class Saga {
@@ -17,11 +25,16 @@ public abstract class Saga {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private String currentStep;
+    // Published and cleared right after every step, so never part of the persisted state
+    @JsonIgnore
     private List<SagaCommand> pendingCommands = new ArrayList<>();
-    private List<DomainEvent> processedEvents = new ArrayList<>();
+    // Only the ids are needed to skip redelivered events, and they persist without type info
+    private Set<String> processedEventIds = new LinkedHashSet<>();
+    private Set<SagaAssociation> associations = new HashSet<>();
+    private Map<String, SagaDeadline> deadlines = new HashMap<>();
 
     protected Saga() {
-        this.sagaId = UUID.randomUUID().toString();
+        this.sagaId = IdGenerator.newId();
         this.status = SagaStatus.STARTED;
         this.createdAt = LocalDateTime.now();
         this.updatedAt = LocalDateTime.now();
@@ -36,6 +49,27 @@ public abstract class Saga {
 
     public abstract void handle(DomainEvent event);
 
+    // Routes events carrying a property key with this value to the saga. Every saga is also
+    // associated with its own sagaId, so replies that carry it always find their saga.
+    protected void associateWith(String key, Object value) {
+        associations.add(new SagaAssociation(key, String.valueOf(value)));
+    }
+
+    // Delivers a SagaDeadlineEvent with this name to the saga once the timeout passes, unless the
+    // saga moved to another step, ended or cancelled the deadline by then
+    protected void scheduleDeadline(String name, Duration timeout) {
+        deadlines.put(name, new SagaDeadline(currentStep, LocalDateTime.now().plus(timeout)));
+    }
+
+    protected void cancelDeadline(String name) {
+        deadlines.remove(name);
+    }
+
+    // Drops the deadlines of steps the saga has completed
+    public void clearStaleDeadlines() {
+        deadlines.values().removeIf(deadline -> !Objects.equals(deadline.getStep(), currentStep));
+    }
+
     protected void addCommand(SagaCommand command) {
         pendingCommands.add(command);
         updatedAt = LocalDateTime.now();
@@ -61,6 +95,7 @@ public abstract class Saga {
         updatedAt = LocalDateTime.now();
     }
 
+    @JsonIgnore
     public List<SagaCommand> getAndClearPendingCommands() {
         List<SagaCommand> commands = new ArrayList<>(pendingCommands);
         pendingCommands.clear();
@@ -68,12 +103,11 @@ public abstract class Saga {
     }
 
     public void addProcessedEvent(DomainEvent event) {
-        processedEvents.add(event);
+        processedEventIds.add(event.getEventId());
         updatedAt = LocalDateTime.now();
     }
 
     public boolean hasProcessedEvent(String eventId) {
-        return processedEvents.stream()
-            .anyMatch(event -> event.getEventId().equals(eventId));
+        return processedEventIds.contains(eventId);
     }
 }
\ No newline at end of file
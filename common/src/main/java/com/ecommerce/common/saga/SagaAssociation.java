@@ -0,0 +1,16 @@
+package com.ecommerce.common.saga;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Correlates a saga with the events it handles: an event reaches the saga when it has a property
+// named key whose value equals value, e.g. orderId = 42
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaAssociation {
+
+    private String key;
+    private String value;
+}
@@ -0,0 +1,17 @@
+package com.ecommerce.common.saga;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// A deadline a saga set during a step, it only applies while the saga is still in that step
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SagaDeadline {
+
+    private String step;
+    private LocalDateTime dueAt;
+}
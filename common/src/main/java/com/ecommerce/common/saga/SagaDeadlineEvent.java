@@ -0,0 +1,26 @@
+package com.ecommerce.common.saga;
+
+import com.ecommerce.common.event.DomainEvent;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Delivered to a saga when one of its deadlines passes before the saga moved on
+@Data
+@EqualsAndHashCode(callSuper = true)
+@NoArgsConstructor
+public class SagaDeadlineEvent extends DomainEvent {
+
+    private String sagaId;
+    private String deadlineName;
+    private LocalDateTime dueAt;
+
+    public SagaDeadlineEvent(String sagaId, String deadlineName, LocalDateTime dueAt) {
+        super(sagaId, "Saga", null);
+        this.sagaId = sagaId;
+        this.deadlineName = deadlineName;
+        this.dueAt = dueAt;
+    }
+}
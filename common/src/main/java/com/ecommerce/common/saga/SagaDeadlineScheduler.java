@@ -0,0 +1,124 @@
+package com.ecommerce.common.saga;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+// Keeps a timer on a timing wheel for every deadline of every active saga and delivers a
+// SagaDeadlineEvent to the registered handler when one passes
+@Component
+@Slf4j
+public class SagaDeadlineScheduler implements SmartLifecycle {
+
+    @Value("${app.saga.deadlines.tick-ms:100}")
+    private long tickMs;
+
+    @Value("${app.saga.deadlines.wheel-size:512}")
+    private int wheelSize;
+
+    @Value("${app.saga.deadlines.threads:2}")
+    private int threads;
+
+    // Timers of each saga by deadline name
+    private final Map<String, Map<String, ScheduledDeadline>> timersBySaga = new ConcurrentHashMap<>();
+
+    private HashedTimingWheel timingWheel;
+
+    private ExecutorService deadlineExecutor;
+
+    private volatile Consumer<SagaDeadlineEvent> handler = event -> { };
+
+    private volatile boolean running = false;
+
+    @PostConstruct
+    public void init() {
+        // Expired deadlines are handled off the wheel thread, so a slow saga cannot delay the ticks
+        deadlineExecutor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("saga-deadline-"));
+        timingWheel = new HashedTimingWheel("saga-deadline-wheel", Duration.ofMillis(tickMs), wheelSize,
+            deadlineExecutor);
+    }
+
+    @Override
+    public void start() {
+        timingWheel.start();
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        timingWheel.stop();
+        deadlineExecutor.shutdown();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void onDeadline(Consumer<SagaDeadlineEvent> handler) {
+        this.handler = handler;
+    }
+
+    // Makes the timers of the saga match the deadlines it currently declares: new ones are
+    // scheduled, dropped or moved ones cancelled
+    public void sync(String sagaId, Map<String, SagaDeadline> deadlines) {
+        timersBySaga.compute(sagaId, (id, timers) -> {
+            Map<String, ScheduledDeadline> current = timers != null ? timers : new HashMap<>();
+
+            current.entrySet().removeIf(entry -> {
+                SagaDeadline deadline = deadlines.get(entry.getKey());
+                if (deadline != null && deadline.getDueAt().equals(entry.getValue().getDueAt())) {
+                    return false;
+                }
+                entry.getValue().getTimeout().cancel();
+                return true;
+            });
+
+            deadlines.forEach((name, deadline) -> current.computeIfAbsent(name, key ->
+                new ScheduledDeadline(deadline.getDueAt(), timingWheel.schedule(() -> fire(sagaId, name, deadline.getDueAt()),
+                    Duration.between(LocalDateTime.now(), deadline.getDueAt())))));
+
+            return current.isEmpty() ? null : current;
+        });
+    }
+
+    public void cancelAll(String sagaId) {
+        sync(sagaId, Map.of());
+    }
+
+    private void fire(String sagaId, String name, LocalDateTime dueAt) {
+        timersBySaga.computeIfPresent(sagaId, (id, timers) -> {
+            // Leave a timer alone that replaced this one under the same name
+            timers.computeIfPresent(name, (key, timer) -> timer.getDueAt().equals(dueAt) ? null : timer);
+            return timers.isEmpty() ? null : timers;
+        });
+
+        try {
+            handler.accept(new SagaDeadlineEvent(sagaId, name, dueAt));
+        } catch (Exception e) {
+            log.error("Deadline {} of saga {} failed", name, sagaId, e);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class ScheduledDeadline {
+        private final LocalDateTime dueAt;
+        private final HashedTimingWheel.Timeout timeout;
+    }
+}
@@ -3,62 +3,267 @@ package com.ecommerce.common.saga;
 import com.ecommerce.common.event.DomainEvent;
 import com.ecommerce.common.messaging.EventPublisher;
 import com.ecommerce.common.messaging.SagaCommand;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.util.ReflectionUtils;
 
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-public class SagaManager {
+@Slf4j
+public class SagaManager implements SmartInitializingSingleton {
+
+    private static final String SAGA_ID = "sagaId";
+
+    // How often the association keys used by sagas on other instances are looked up again
+    private static final long ASSOCIATION_KEYS_REFRESH_MS = 10_000;
 
     @Autowired
     private EventPublisher eventPublisher;
 
+    @Autowired
+    private SagaRepository sagaRepository;
+
+    @Autowired
+    private SagaDeadlineScheduler sagaDeadlineScheduler;
+
     private final Map<String, Saga> activeSagas = new ConcurrentHashMap<>();
 
+    // Saga ids by association, so an event is only offered to the sagas it correlates with
+    private final Map<SagaAssociation, Set<String>> sagaIdsByAssociation = new ConcurrentHashMap<>();
+
+    // Every association key in use, and per event class the properties that carry one of them
+    private final Set<String> associationKeys = ConcurrentHashMap.newKeySet();
+    private final Map<Class<?>, List<PropertyDescriptor>> associationProperties = new ConcurrentHashMap<>();
+
+    private volatile long associationKeysRefreshedAt;
+
+    public SagaManager() {
+        associationKeys.add(SAGA_ID);
+    }
+
+    // Resumes the sagas that were in flight when the service last stopped and that no other
+    // instance is running
+    @Override
+    public void afterSingletonsInstantiated() {
+        sagaDeadlineScheduler.onDeadline(this::handleEvent);
+        sagaRepository.onOwnershipLost(this::removeSaga);
+
+        List<Saga> sagas = sagaRepository.claimActive();
+        sagas.forEach(this::activate);
+        log.info("Recovered {} active sagas", sagas.size());
+        refreshAssociationKeys();
+    }
+
     public void startSaga(Saga saga) {
-        activeSagas.put(saga.getSagaId(), saga);
-        processCommands(saga);
+        activate(saga);
+        synchronized (saga) {
+            // The saga is written before its first commands go out, so a reply never finds it missing
+            List<SagaCommand> commands = saga.getAndClearPendingCommands();
+            sagaRepository.saveNow(saga);
+            publish(commands);
+        }
     }
 
     public void handleEvent(DomainEvent event) {
-        // Find sagas that should handle this event
-        activeSagas.values().stream()
-            .filter(saga -> shouldHandleEvent(saga, event))
-            .forEach(saga -> {
-                if (!saga.hasProcessedEvent(event.getEventId())) {
-                    saga.handle(event);
-                    saga.addProcessedEvent(event);
-                    processCommands(saga);
-
-                    // Remove completed or failed sagas
-                    if (saga.getStatus() == SagaStatus.COMPLETED ||
-                        saga.getStatus() == SagaStatus.COMPENSATED) {
-                        activeSagas.remove(saga.getSagaId());
-                    }
+        for (String sagaId : correlatedSagaIds(event)) {
+            Saga saga = activeSagas.get(sagaId);
+            if (saga != null) {
+                handle(saga, event);
+            }
+        }
+    }
+
+    private void handle(Saga saga, DomainEvent event) {
+        // One event at a time per saga, events of other sagas are handled concurrently
+        synchronized (saga) {
+            if (!isActive(saga) || saga.hasProcessedEvent(event.getEventId())) {
+                return;
+            }
+            if (event instanceof SagaDeadlineEvent deadline && !takeDeadline(saga, deadline)) {
+                return;
+            }
+
+            saga.handle(event);
+            saga.addProcessedEvent(event);
+            index(saga); // The saga may have associated itself with more values
+            saga.clearStaleDeadlines(); // Moving on to another step cancels the deadlines of the last
+            List<SagaCommand> commands = saga.getAndClearPendingCommands();
+
+            // A step that sends commands and the final state are written through before anything
+            // is published, so a command never goes out for a state that could still be lost.
+            // Other intermediate steps are written behind.
+            if (isActive(saga)) {
+                sagaDeadlineScheduler.sync(saga.getSagaId(), Map.copyOf(saga.getDeadlines()));
+                if (commands.isEmpty()) {
+                    sagaRepository.save(saga);
+                } else {
+                    sagaRepository.saveNow(saga);
                 }
-            });
+            } else {
+                sagaRepository.saveNow(saga);
+                removeSaga(saga.getSagaId());
+            }
+            publish(commands);
+        }
+    }
+
+    private void activate(Saga saga) {
+        activeSagas.put(saga.getSagaId(), saga);
+        index(saga);
+        saga.clearStaleDeadlines();
+        sagaDeadlineScheduler.sync(saga.getSagaId(), Map.copyOf(saga.getDeadlines()));
     }
 
-    private void processCommands(Saga saga) {
-        List<SagaCommand> commands = saga.getAndClearPendingCommands();
+    // Removes the deadline from the saga if the event is for the one it still has. A timer that
+    // fired just as its deadline was cancelled or moved delivers an event that is ignored.
+    private boolean takeDeadline(Saga saga, SagaDeadlineEvent event) {
+        SagaDeadline deadline = saga.getDeadlines().get(event.getDeadlineName());
+        if (deadline == null || !deadline.getDueAt().equals(event.getDueAt())
+                || !Objects.equals(deadline.getStep(), saga.getCurrentStep())) {
+            return false;
+        }
+        saga.getDeadlines().remove(event.getDeadlineName());
+        return true;
+    }
+
+    private void publish(List<SagaCommand> commands) {
         commands.forEach(eventPublisher::publishSagaCommand);
     }
 
-    private boolean shouldHandleEvent(Saga saga, DomainEvent event) {
-        // Simple implementation - can be made more sophisticated
+    private boolean isActive(Saga saga) {
         return saga.getStatus() == SagaStatus.STARTED ||
                saga.getStatus() == SagaStatus.IN_PROGRESS ||
                saga.getStatus() == SagaStatus.COMPENSATING;
     }
 
+    private Set<String> correlatedSagaIds(DomainEvent event) {
+        if (System.currentTimeMillis() - associationKeysRefreshedAt >= ASSOCIATION_KEYS_REFRESH_MS) {
+            refreshAssociationKeys();
+        }
+
+        Set<String> sagaIds = new LinkedHashSet<>();
+        for (PropertyDescriptor property : associationProperties(event.getClass())) {
+            Object value = ReflectionUtils.invokeMethod(property.getReadMethod(), event);
+            if (value != null) {
+                Set<String> associated = sagaIdsByAssociation.get(
+                    new SagaAssociation(property.getName(), String.valueOf(value)));
+                if (associated != null) {
+                    sagaIds.addAll(associated);
+                } else if (SAGA_ID.equals(property.getName())) {
+                    if (adopt(String.valueOf(value))) {
+                        sagaIds.add(String.valueOf(value));
+                    }
+                } else {
+                    // No saga here correlates with the value, one on another instance may
+                    SagaAssociation association = new SagaAssociation(property.getName(), String.valueOf(value));
+                    for (String sagaId : sagaRepository.findActiveIdsByAssociation(association)) {
+                        if (adopt(sagaId)) {
+                            sagaIds.add(sagaId);
+                        }
+                    }
+                }
+            }
+        }
+        return sagaIds;
+    }
+
+    // Takes over a saga started by another instance when an event addressed to it arrives here,
+    // once that instance no longer holds it. While it does, the event is rejected so the broker
+    // redelivers it, to the owner or to this instance after the lease has run out.
+    private boolean adopt(String sagaId) {
+        if (activeSagas.containsKey(sagaId)) {
+            return true;
+        }
+        Saga saga = sagaRepository.claim(sagaId).orElse(null);
+        if (saga == null) {
+            if (activeSagas.containsKey(sagaId)) {
+                return true; // Adopted by a concurrent event in the meantime
+            }
+            if (sagaRepository.findById(sagaId).filter(this::isActive).isPresent()) {
+                throw new IllegalStateException("Saga " + sagaId + " is owned by another instance");
+            }
+            return false;
+        }
+        activate(saga);
+        return true;
+    }
+
+    // Picks up the keys sagas on other instances correlate by, so events carrying them are looked
+    // up even before a saga using the key runs here
+    private void refreshAssociationKeys() {
+        associationKeysRefreshedAt = System.currentTimeMillis();
+        try {
+            sagaRepository.findAssociationKeys().forEach(this::addAssociationKey);
+        } catch (Exception e) {
+            log.warn("Failed to load saga association keys, will retry", e);
+        }
+    }
+
+    private void addAssociationKey(String key) {
+        if (associationKeys.add(key)) {
+            associationProperties.clear(); // Event classes may carry the new key
+        }
+    }
+
+    private List<PropertyDescriptor> associationProperties(Class<?> eventClass) {
+        return associationProperties.computeIfAbsent(eventClass, type -> {
+            List<PropertyDescriptor> properties = new ArrayList<>();
+            for (String key : associationKeys) {
+                PropertyDescriptor property = BeanUtils.getPropertyDescriptor(type, key);
+                if (property != null && property.getReadMethod() != null) {
+                    properties.add(property);
+                }
+            }
+            return properties;
+        });
+    }
+
+    private Set<SagaAssociation> associationsOf(Saga saga) {
+        Set<SagaAssociation> associations = new LinkedHashSet<>(saga.getAssociations());
+        associations.add(new SagaAssociation(SAGA_ID, saga.getSagaId()));
+        return associations;
+    }
+
+    private void index(Saga saga) {
+        for (SagaAssociation association : associationsOf(saga)) {
+            addAssociationKey(association.getKey());
+            sagaIdsByAssociation.compute(association, (key, sagaIds) -> {
+                Set<String> updated = sagaIds != null ? sagaIds : ConcurrentHashMap.newKeySet();
+                updated.add(saga.getSagaId());
+                return updated;
+            });
+        }
+    }
+
+    private void unindex(Saga saga) {
+        for (SagaAssociation association : associationsOf(saga)) {
+            sagaIdsByAssociation.computeIfPresent(association, (key, sagaIds) -> {
+                sagaIds.remove(saga.getSagaId());
+                return sagaIds.isEmpty() ? null : sagaIds;
+            });
+        }
+    }
+
     public Saga getSaga(String sagaId) {
         return activeSagas.get(sagaId);
     }
 
     public void removeSaga(String sagaId) {
-        activeSagas.remove(sagaId);
+        Saga saga = activeSagas.remove(sagaId);
+        if (saga != null) {
+            unindex(saga);
+            sagaDeadlineScheduler.cancelAll(sagaId);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.ecommerce.common.saga;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+public interface SagaRepository {
+
+    // Records the saga's current state, written to the store shortly after. Later saves of the same
+    // saga before the write replace the earlier ones, so only the latest state is written.
+    void save(Saga saga);
+
+    // Writes the saga's current state before returning, for transitions that must not be lost
+    void saveNow(Saga saga);
+
+    Optional<Saga> findById(String sagaId);
+
+    // Ids of the active sagas, on any instance, associated with the value
+    List<String> findActiveIdsByAssociation(SagaAssociation association);
+
+    // Every association key any saga has used
+    Set<String> findAssociationKeys();
+
+    // Takes over the saga if it is active and no other instance holds it, empty otherwise
+    Optional<Saga> claim(String sagaId);
+
+    // Takes over every active saga no other instance holds, to resume after a restart
+    List<Saga> claimActive();
+
+    // Called with the id of a saga another instance took over, which must no longer run here
+    void onOwnershipLost(Consumer<String> handler);
+}
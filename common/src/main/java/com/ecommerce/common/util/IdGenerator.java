@@ -0,0 +1,39 @@
+package com.ecommerce.common.util;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Time-ordered UUIDv7 ids (RFC 9562): 48 bits of unix milliseconds, a 12 bit per thread counter
+// and 62 random bits. Ids from one thread are strictly increasing and ids from different threads
+// are ordered to the millisecond, so inserts land at the right edge of a B-tree index.
+// Random bits come from ThreadLocalRandom, the ids are unique but not meant to be unguessable.
+public class IdGenerator {
+
+    private static final int MAX_SEQUENCE = 0xFFF;
+
+    // Last timestamp and counter of the calling thread, no state is shared between threads
+    private static final ThreadLocal<long[]> STATE = ThreadLocal.withInitial(() -> new long[2]);
+
+    public static String newId() {
+        return newUuid().toString();
+    }
+
+    public static UUID newUuid() {
+        long[] state = STATE.get();
+        long now = System.currentTimeMillis();
+
+        if (now > state[0]) {
+            state[0] = now;
+            // Start at a random point in the lower half to leave room for increments
+            state[1] = ThreadLocalRandom.current().nextInt(MAX_SEQUENCE / 2);
+        } else if (++state[1] > MAX_SEQUENCE) {
+            // Counter exhausted within one millisecond or the clock moved back, borrow the next millisecond
+            state[0]++;
+            state[1] = 0;
+        }
+
+        long mostSignificantBits = (state[0] << 16) | (0x7L << 12) | state[1];
+        long leastSignificantBits = (ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(mostSignificantBits, leastSignificantBits);
+    }
+}
@@ -19,4 +19,15 @@ public class CreateOrderCommand extends Command {
         this.userId = userId;
         this.orderItems = orderItems;
     }
+
+    public CreateOrderCommand(String commandId, Long userId, List<CreateOrderRequest> orderItems) {
+        super(commandId);
+        this.userId = userId;
+        this.orderItems = orderItems;
+    }
+
+    @Override
+    public String getIssuedBy() {
+        return userId != null ? userId.toString() : null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package com.ecommerce.order.command;
+
+import com.ecommerce.common.cqrs.Command;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class DeleteOrderCommand extends Command {
+
+    private Long orderId;
+
+    public DeleteOrderCommand(Long orderId) {
+        super();
+        this.orderId = orderId;
+    }
+
+    @Override
+    public String getTargetAggregateId() {
+        return orderId.toString();
+    }
+}
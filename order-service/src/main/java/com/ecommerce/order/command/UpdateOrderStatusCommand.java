@@ -0,0 +1,25 @@
+package com.ecommerce.order.command;
+
+import com.ecommerce.common.cqrs.Command;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class UpdateOrderStatusCommand extends Command {
+
+    private Long orderId;
+    private String status;
+
+    public UpdateOrderStatusCommand(Long orderId, String status) {
+        super();
+        this.orderId = orderId;
+        this.status = status;
+    }
+
+    // Runs on the order's lane, so changes to one order never race each other
+    @Override
+    public String getTargetAggregateId() {
+        return orderId.toString();
+    }
+}
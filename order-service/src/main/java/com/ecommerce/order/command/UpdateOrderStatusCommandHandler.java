@@ -0,0 +1,20 @@
+package com.ecommerce.order.command;
+
+import com.ecommerce.common.cqrs.CommandHandler;
+import com.ecommerce.order.service.OrderService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional
+public class UpdateOrderStatusCommandHandler implements CommandHandler<UpdateOrderStatusCommand> {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Override
+    public void handle(UpdateOrderStatusCommand command) {
+        orderService.updateOrderStatus(command.getOrderId(), command.getStatus());
+    }
+}
@@ -1,22 +1,31 @@
 package com.ecommerce.order.controller;
 
 import com.ecommerce.common.cqrs.CommandBus;
+import com.ecommerce.common.cqrs.CommandStatus;
 import com.ecommerce.common.cqrs.QueryBus;
 import com.ecommerce.common.util.UserContextUtil;
+import com.ecommerce.order.aggregate.OrderAggregate;
 import com.ecommerce.order.command.CreateOrderCommand;
+import com.ecommerce.order.command.DeleteOrderCommand;
+import com.ecommerce.order.command.UpdateOrderStatusCommand;
 import com.ecommerce.order.dto.CreateOrderRequest;
 import com.ecommerce.order.entity.Order;
+import com.ecommerce.order.repository.OrderAggregateRepository;
 import com.ecommerce.order.service.OrderService;
 import jakarta.validation.Valid;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -31,6 +40,9 @@ public class OrderController {
 	@Autowired
 	private QueryBus queryBus;
 
+	@Autowired
+	private OrderAggregateRepository orderAggregateRepository;
+
 	@GetMapping
 	public ResponseEntity<List<Order>> getAllOrders() {
 		List<Order> orders = orderService.getAllOrders();
@@ -50,18 +62,58 @@ public class OrderController {
 		return ResponseEntity.ok(orders);
 	}
 
+	// Reconstructs the order aggregate as of a version or a point in time, for support and audit
+	@GetMapping("/aggregates/{aggregateId}/history")
+	public ResponseEntity<?> getOrderAsOf(@PathVariable String aggregateId,
+			@RequestParam(required = false) Long version,
+			@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+		if ((version == null) == (at == null)) {
+			return ResponseEntity.badRequest().body("Specify exactly one of version or at");
+		}
+
+		OrderAggregate order = version != null
+				? orderAggregateRepository.findAsOf(aggregateId, version)
+				: orderAggregateRepository.findAsOf(aggregateId, at);
+		return order != null ? ResponseEntity.ok(order) : ResponseEntity.notFound().build();
+	}
+
+	// Only the user who sent the command sees its status, anyone else gets a 404
+	@GetMapping("/commands/{commandId}")
+	public ResponseEntity<CommandStatus> getCommandStatus(@PathVariable String commandId) {
+		Long userId = UserContextUtil.getCurrentUserId();
+		return commandBus.getStatus(commandId)
+				.filter(status -> userId != null && userId.toString().equals(status.getIssuedBy()))
+				.map(ResponseEntity::ok)
+				.orElse(ResponseEntity.notFound().build());
+	}
+
 	@PostMapping
-	public ResponseEntity<?> createOrder(@Valid @RequestBody List<CreateOrderRequest> requests) {
+	public ResponseEntity<?> createOrder(@Valid @RequestBody List<CreateOrderRequest> requests,
+			@RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+		// Orders belong to a user and keys are scoped to one, anonymous requests have neither
+		Long userId = UserContextUtil.getCurrentUserId();
+		if (userId == null) {
+			return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Missing or invalid X-User-Id header");
+		}
+
 		try {
+			// Keys are chosen by clients, scope them to the user so two users never share a command id
 			CreateOrderCommand command = new CreateOrderCommand(
-					UserContextUtil.getCurrentUserId(),
+					idempotencyKey != null ? userId + ":" + idempotencyKey : null,
+					userId,
 					requests
 			);
 
-			commandBus.send(command);
+			// Processed on the command executor, the client polls the command status.
+			// A retry with the same Idempotency-Key gets the status of the first attempt.
+			commandBus.sendAsync(command);
 
-			return ResponseEntity.status(HttpStatus.ACCEPTED)
-					.body("Order creation initiated");
+			return ResponseEntity.accepted()
+					.location(URI.create("/api/orders/commands/" + command.getCommandId()))
+					.body(commandBus.getStatus(command.getCommandId()).orElse(null));
+		}
+		catch (RejectedExecutionException e) {
+			return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many pending orders, retry later");
 		}
 		catch (Exception e) {
 			return ResponseEntity.badRequest().body(e.getMessage());
@@ -71,8 +123,8 @@ public class OrderController {
 	@PutMapping("/{id}/status")
 	public ResponseEntity<?> updateOrderStatus(@PathVariable("id") Long id, @RequestParam String status) {
 		try {
-			Order updatedOrder = orderService.updateOrderStatus(id, status);
-			return ResponseEntity.ok(updatedOrder);
+			commandBus.send(new UpdateOrderStatusCommand(id, status));
+			return ResponseEntity.ok(orderService.getOrderById(id).orElse(null));
 		}
 		catch (RuntimeException e) {
 			return ResponseEntity.badRequest().body(e.getMessage());
@@ -82,7 +134,7 @@ public class OrderController {
 	@DeleteMapping("/{id}")
 	public ResponseEntity<?> deleteOrder(@PathVariable("id") Long id) {
 		try {
-			orderService.deleteOrder(id);
+			commandBus.send(new DeleteOrderCommand(id));
 			return ResponseEntity.ok().build();
 		}
 		catch (RuntimeException e) {
@@ -0,0 +1,79 @@
+package com.ecommerce.order.controller;
+
+import com.ecommerce.common.cqrs.ProjectionEngine;
+import com.ecommerce.common.event.EventReplayer;
+import com.ecommerce.common.event.ReplayProgress;
+import com.ecommerce.common.util.UserContextUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Admins only, by the roles the gateway forwards in X-User-Roles
+@RestController
+@RequestMapping("/api/admin/projections")
+@Slf4j
+public class ProjectionAdminController {
+
+	private static final String ADMIN_ROLE = "ADMIN";
+
+	@Autowired
+	private ProjectionEngine projectionEngine;
+
+	@Autowired
+	private EventReplayer eventReplayer;
+
+	// Rebuilds run one at a time, off the request threads and the common pool
+	private final ExecutorService rebuildExecutor =
+			Executors.newSingleThreadExecutor(new CustomizableThreadFactory("projection-rebuild-"));
+
+	@PreDestroy
+	public void shutdown() {
+		rebuildExecutor.shutdown();
+	}
+
+	@GetMapping
+	public ResponseEntity<Set<String>> getProjections() {
+		if (!UserContextUtil.hasRole(ADMIN_ROLE)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		return ResponseEntity.ok(projectionEngine.getProjectionNames());
+	}
+
+	// Rebuilds run in the background, poll the replay status for progress. A failed rebuild is
+	// logged and its replay status shows the failure, it is started over on the next poll.
+	@PostMapping("/{name}/rebuild")
+	public ResponseEntity<Void> rebuildProjection(@PathVariable String name) {
+		if (!UserContextUtil.hasRole(ADMIN_ROLE)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		if (!projectionEngine.getProjectionNames().contains(name)) {
+			return ResponseEntity.notFound().build();
+		}
+		CompletableFuture.runAsync(() -> projectionEngine.rebuild(name), rebuildExecutor)
+				.whenComplete((result, failure) -> {
+					if (failure != null) {
+						log.error("Rebuild of projection {} failed", name, failure);
+					}
+				});
+		return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+	}
+
+	@GetMapping("/replays")
+	public ResponseEntity<List<ReplayProgress>> getReplays() {
+		if (!UserContextUtil.hasRole(ADMIN_ROLE)) {
+			return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+		}
+		return ResponseEntity.ok(eventReplayer.getAllProgress());
+	}
+}
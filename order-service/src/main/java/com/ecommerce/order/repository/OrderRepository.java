@@ -1,13 +1,25 @@
 package com.ecommerce.order.repository;
 
 import com.ecommerce.order.entity.Order;
+import com.ecommerce.order.entity.OrderStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
     List<Order> findByUserId(Long userId);
     List<Order> findByUserIdOrderByCreatedAtDesc(Long userId);
-}
\ No newline at end of file
+
+    @Query("SELECT CAST(o.id AS string) FROM Order o WHERE o.status IN :statuses AND o.updatedAt < :updatedBefore " +
+           "AND EXISTS (SELECT 1 FROM EventStoreEntry e WHERE e.aggregateId = CAST(o.id AS string)) ORDER BY o.id")
+    List<String> findOrderIdsWithEventsByStatus(@Param("statuses") Collection<OrderStatus> statuses,
+                                                @Param("updatedBefore") LocalDateTime updatedBefore,
+                                                Pageable pageable);
+}
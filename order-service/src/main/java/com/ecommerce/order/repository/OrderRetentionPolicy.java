@@ -0,0 +1,35 @@
+package com.ecommerce.order.repository;
+
+import com.ecommerce.common.event.AggregateRepository;
+import com.ecommerce.common.event.RetentionPolicy;
+import com.ecommerce.order.entity.OrderStatus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+// Orders that were cancelled or delivered no longer change, so their events can be archived
+@Component
+public class OrderRetentionPolicy implements RetentionPolicy {
+
+    private static final EnumSet<OrderStatus> TERMINAL_STATUSES = EnumSet.of(OrderStatus.CANCELLED, OrderStatus.DELIVERED);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderAggregateRepository orderAggregateRepository;
+
+    @Override
+    public AggregateRepository<?> getAggregateRepository() {
+        return orderAggregateRepository;
+    }
+
+    @Override
+    public List<String> findArchivableAggregateIds(LocalDateTime terminalBefore, int limit) {
+        return orderRepository.findOrderIdsWithEventsByStatus(TERMINAL_STATUSES, terminalBefore, PageRequest.of(0, limit));
+    }
+}
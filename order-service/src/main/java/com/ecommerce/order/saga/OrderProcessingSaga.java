@@ -3,16 +3,23 @@ package com.ecommerce.order.saga;
 import com.ecommerce.common.event.DomainEvent;
 import com.ecommerce.common.messaging.SagaCommand;
 import com.ecommerce.common.saga.Saga;
+import com.ecommerce.common.saga.SagaDeadlineEvent;
 import com.ecommerce.common.saga.SagaStatus;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class OrderProcessingSaga extends Saga {
 
+    private static final String STOCK_RESERVATION_DEADLINE = "stock-reservation";
+    private static final String PAYMENT_DEADLINE = "payment";
+    private static final Duration STOCK_RESERVATION_TIMEOUT = Duration.ofSeconds(30);
+    private static final Duration PAYMENT_TIMEOUT = Duration.ofMinutes(2);
+
     private Long orderId;
     private Long userId;
     private Long productId;
@@ -30,6 +37,7 @@ public class OrderProcessingSaga extends Saga {
         this.productId = productId;
         this.quantity = quantity;
         this.totalAmount = totalAmount;
+        associateWith("orderId", orderId);
         setCurrentStep("ORDER_CREATED");
     }
 
@@ -51,6 +59,9 @@ public class OrderProcessingSaga extends Saga {
             case "PaymentFailedEvent":
                 handlePaymentFailed(event);
                 break;
+            case "SagaDeadlineEvent":
+                handleDeadlineExpired((SagaDeadlineEvent) event);
+                break;
             default:
                 // Ignore unknown events
                 break;
@@ -70,6 +81,7 @@ public class OrderProcessingSaga extends Saga {
         );
 
         addCommand(reserveStockCommand);
+        scheduleDeadline(STOCK_RESERVATION_DEADLINE, STOCK_RESERVATION_TIMEOUT);
     }
 
     private void handleStockReserved(DomainEvent event) {
@@ -84,6 +96,7 @@ public class OrderProcessingSaga extends Saga {
         );
 
         addCommand(processPaymentCommand);
+        scheduleDeadline(PAYMENT_DEADLINE, PAYMENT_TIMEOUT);
     }
 
     private void handleStockReservationFailed(DomainEvent event) {
@@ -118,6 +131,25 @@ public class OrderProcessingSaga extends Saga {
     }
 
     private void handlePaymentFailed(DomainEvent event) {
+        releaseStockAndCancelOrder("Payment failed");
+    }
+
+    // No answer in time from product-service or payment-service. The stock is released as well
+    // because a reservation may still land after the deadline.
+    private void handleDeadlineExpired(SagaDeadlineEvent event) {
+        switch (event.getDeadlineName()) {
+            case STOCK_RESERVATION_DEADLINE:
+                releaseStockAndCancelOrder("Stock reservation timed out");
+                break;
+            case PAYMENT_DEADLINE:
+                releaseStockAndCancelOrder("Payment timed out");
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void releaseStockAndCancelOrder(String reason) {
         setCurrentStep("COMPENSATING");
         markCompensating();
 
@@ -136,7 +168,7 @@ public class OrderProcessingSaga extends Saga {
             "CancelOrderCommand",
             getSagaId(),
             "order-service",
-            new CancelOrderRequest(orderId, "Payment failed")
+            new CancelOrderRequest(orderId, reason)
         );
 
         addCommand(cancelOrderCommand);
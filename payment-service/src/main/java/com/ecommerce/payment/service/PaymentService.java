@@ -1,5 +1,6 @@
 package com.ecommerce.payment.service;
 
+import com.ecommerce.common.util.IdGenerator;
 import com.ecommerce.payment.client.OrderClient;
 import com.ecommerce.payment.client.OrderResponse;
 import com.ecommerce.payment.entity.Payment;
@@ -11,7 +12,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 
 @Service
 public class PaymentService {
@@ -52,7 +52,7 @@ public class PaymentService {
 
         payment.setUserId(order.getUserId());
         payment.setStatus(PaymentStatus.PROCESSING);
-        payment.setTransactionId(UUID.randomUUID().toString());
+        payment.setTransactionId(IdGenerator.newId());
 
         Payment savedPayment = paymentRepository.save(payment);
 